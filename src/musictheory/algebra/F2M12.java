@@ -20,30 +20,60 @@ import org.jlinalg.Vector;
  * You're welcome to enjoy the source code but this isn't the point of the project so it isn't documented...
  */
 public class F2M12 extends FieldElement<F2M12> {
-	private static boolean[] M = new boolean[13];
+	private static final int M = 0x1009;	// 1 + x^3 + x^12, packed
+	private static final int N = 4095;	// order of the multiplicative group
+
+	// discrete logs and powers of a fixed primitive element g
+	// EXP is doubled so that EXP[LOG[x] + LOG[y]] never needs a modulus
+	private static final short[] LOG = new short[N+1];
+	private static final short[] EXP = new short[2*N];
 	static {
-		M[0] = true;
-		M[3] = true;
-		M[12] = true;
+		// x itself only has order 45 modulo M, so search for a primitive element
+		for (int g = 2; ; g ++) {
+			int p = 1;
+			int i = 0;
+			do {
+				EXP[i++] = (short)p;
+				p = clmul(p, g);
+			} while (p != 1);
+			if (i == N) break;
+		}
+		for (int i = 0; i < N; i ++) {
+			EXP[i+N] = EXP[i];
+			LOG[EXP[i]] = (short)i;
+		}
 	}
 
-	private boolean[] co;
+	// the only instances that exist: VALUES[i].value() == i
+	private static final F2M12[] VALUES = new F2M12[N+1];
+	static {
+		for (int i = 0; i <= N; i ++) VALUES[i] = new F2M12((short)i);
+	}
 
-	public F2M12(boolean[] co) {
-		if (co.length > 12) throw new IllegalArgumentException("Too many indices");
-		this.co = new boolean[12];
-		for (int i = 0; i < co.length; i ++) this.co[i] = co[i];
+	private final short co;	// bit i is the coefficient of x^i
+
+	private F2M12(short co) {
+		this.co = co;
 	}
 
-	public F2M12(int... vector) {
-		if (vector.length > 12) throw new IllegalArgumentException("Too many arguments");
-		this.co = new boolean[12];
-		for (int i = 0; i < vector.length; i ++) co[i] = vector[i] > 0;
+	/**
+	 * The canonical element whose packed coefficients are bits (see value())
+	 */
+	public static F2M12 valueOf(int bits) {
+		if (bits < 0 || bits > N) throw new IllegalArgumentException("Packed value must be in [0,4096)");
+		return VALUES[bits];
 	}
 
 	public boolean co(int i) {
 		if (i < 0 || i >= 12) throw new IllegalArgumentException("Index must be in [0,12)");
-		return co[i];
+		return (co >> i & 1) != 0;
+	}
+
+	/**
+	 * The coefficients of this element packed into the low 12 bits of an int (bit i is the coefficient of x^i)
+	 */
+	public int value() {
+		return co;
 	}
 
 
@@ -61,32 +91,11 @@ public class F2M12 extends FieldElement<F2M12> {
     }
 
     public F2M12 multiply(F2M12 other) {
-		boolean[] product = new boolean[12];
-		boolean[] cox = new boolean[12];
-		for (int i = 0; i < 12; i ++) cox[i] = co[i];
-
-		for (int i = 0; i < 12; i ++) {
-			// add the term co*x^i if x^i is a term in other
-			if (other.co[i]) {
-				for (int j = 0; j < 12; j ++) product[j] = product[j] != cox[j];
-			}
-
-			// set cox *= x
-			boolean gtp = cox[11];	// will we subtract by M = 1 + x^3 + x^12?
-			for (int j = 11; j > 0; j --) cox[j] = cox[j-1];
-			if (gtp) {
-				cox[3] = !cox[3];
-				cox[0] = true;
-			} else cox[0] = false;
-		}
-
-		return new F2M12(product);
+		return VALUES[multiply(co, other.co)];
 	}
 
 	public F2M12 pow(int e) {
-		F2M12 p = ONE;
-		for (int i = 1; i <= e; i ++) p = p.multiply(this);
-		return p;
+		return VALUES[pow(co, e)];
 	}
 
     public F2M12 negate() {
@@ -94,109 +103,156 @@ public class F2M12 extends FieldElement<F2M12> {
 	}
 
 	public F2M12 invert() {
-		if (this.equals(ZERO)) throw new IllegalArgumentException("Cannot divide by zero");
+		return VALUES[invert(co)];
+	}
 
-		boolean[] a = new boolean[12];
-		for (int i = 0; i < 12; i ++) a[i] = co[i];
+    public F2M12 add(F2M12 other) {
+        return VALUES[co ^ other.co];
+	}
 
-		F2M12 xp = ZERO;
-		F2M12 x = ONE;
+	public boolean equals(Object o) {
+		return this == o;	// instances are canonical
+	}
 
-		divmod qr = new divmod(M, a);
-		while (! qr.R.isZero()) {
-			F2M12 temp = x;
-			x = xp.subtract( qr.Q.multiply(x) );
-			xp = temp;
+	public int hashCode() {
+		return co;
+	}
 
-			temp = qr.R;
-			qr = new divmod(a, temp.co);
-			a = temp.co;
-		}
+	public String toString() {
+		String ret = "";
+		for (int i = 0; i < 12; i ++) ret += (co >> i & 1) != 0 ? "1" : "0";
+		return ret;
+	}
 
-		// as this is a field, last non-zero remainder is always scalar
-		// as coefficients are binary, no normalization is necessary
 
-		return x;
+
+	/*
+	 *  PACKED ARITHMETIC
+	 */
+
+	/**
+	 * Product of two packed elements (see value())
+	 */
+	public static int multiply(int x, int y) {
+		if (x == 0 || y == 0) return 0;
+		return EXP[LOG[x] + LOG[y]];
 	}
 
-	private class divmod {
-		F2M12 Q;
-		F2M12 R;
-
-		divmod(boolean[] p, boolean[] a) {
-			// first find degrees
-			int deg_p = p.length - 1;
-			while (deg_p >= 0 && !p[deg_p]) deg_p --;
-			if (deg_p < 0) {	// p == 0
-				Q = ZERO;
-				R = ZERO;
-				return;
-			}
+	/**
+	 * Quotient x / y of two packed elements
+	 */
+	public static int divide(int x, int y) {
+		if (y == 0) throw new IllegalArgumentException("Cannot divide by zero");
+		if (x == 0) return 0;
+		return EXP[LOG[x] - LOG[y] + N];
+	}
 
-			int deg_a = a.length - 1;
-			while (deg_a >= 0 && !a[deg_a]) deg_a --;
-			if (deg_a < 0) throw new IllegalArgumentException("Cannot divide by zero");
-			if (deg_a == 0) {	// a == 1
-				if (deg_p == 12) Q = ONE;	// deg_p == 13 only when p == M
-				else Q = new F2M12(p);
-				R = ZERO;
-				return;
-			}
+	/**
+	 * Multiplicative inverse of a packed element
+	 */
+	public static int invert(int x) {
+		if (x == 0) throw new IllegalArgumentException("Cannot divide by zero");
+		return EXP[N - LOG[x]];
+	}
 
-			if (deg_p < deg_a) {
-				Q = ZERO;
-				R = new F2M12(p);
-				return;
-			}
+	/**
+	 * x^e for a packed element x. Negative e raises the inverse of x.
+	 */
+	public static int pow(int x, int e) {
+		if (e == 0) return 1;
+		if (x == 0) {
+			if (e < 0) throw new IllegalArgumentException("Cannot divide by zero");
+			return 0;
+		}
+		return EXP[(int)Math.floorMod((long)LOG[x] * e, (long)N)];
+	}
 
-			int d = deg_p - deg_a;
+	/**
+	 * Discrete logarithm of a non-zero packed element, to the base of a fixed primitive element g
+	 */
+	public static int log(int x) {
+		if (x == 0) throw new IllegalArgumentException("Zero has no logarithm");
+		return LOG[x];
+	}
 
-			boolean[] new_p = new boolean[a.length];
-			for (int i = 0; i < d; i ++) new_p[i] = p[i];
-			for (int i = d; i < a.length; i ++) new_p[i] = p[i] != a[i-d];
+	/**
+	 * g^e as a packed element, for the same primitive element g used by log(int)
+	 */
+	public static int exp(int e) {
+		return EXP[Math.floorMod(e, N)];
+	}
 
-			if (d == 0) {
-				Q = ONE;
-				R = new F2M12(new_p);
-				return;
-			}
+	private static int clmul(int x, int y) {
+		// carry-less multiply, then reduce by M
+		int p = 0;
+		for (int i = 0; i < 12; i ++) {
+			p ^= (x << i) & -(y >> i & 1);
+		}
+		for (int i = 22; i >= 12; i --) {
+			p ^= (M << (i-12)) & -(p >> i & 1);
+		}
+		return p;
+	}
 
-			divmod recur = new divmod(new_p, a);	// yes I made a recursive constructor
+	/**
+	 * out[i] = x[i] + y[i], for vectors of packed elements. out may alias x or y.
+	 */
+	public static void add(short[] x, short[] y, short[] out) {
+		for (int i = 0; i < out.length; i ++) out[i] = (short)(x[i] ^ y[i]);
+	}
 
-			boolean[] q = new boolean[12];
-			for (int i = 0; i < q.length; i ++) q[i] = recur.Q.co[i]; // copy quotient
-			q[d] = true;							// include this iteration
+	/**
+	 * out[i] = x[i] * y[i], for vectors of packed elements. out may alias x or y.
+	 */
+	public static void multiply(short[] x, short[] y, short[] out) {
+		for (int i = 0; i < out.length; i ++) out[i] = (short)multiply(x[i], y[i]);
+	}
 
-			Q = new F2M12(q);
-			R = recur.R;
+	/**
+	 * out[i] = c * x[i], for a vector of packed elements and a packed scalar c. out may alias x.
+	 */
+	public static void scale(short[] x, int c, short[] out) {
+		if (c == 0) {
+			for (int i = 0; i < out.length; i ++) out[i] = 0;
+			return;
 		}
+		int lc = LOG[c];
+		for (int i = 0; i < out.length; i ++) out[i] = x[i] == 0 ? 0 : EXP[LOG[x[i]] + lc];
 	}
 
-    public F2M12 add(F2M12 other) {
-		boolean[] sum = new boolean[12];
-		for (int i = 0; i < 12; i ++) {
-			sum[i] = co[i] != other.co[i];
+	/**
+	 * out[off+i] += c * x[xoff+i] for i in [0,len), for packed vectors x and out and a packed scalar c
+	 */
+	public static void addMultiple(short[] x, int xoff, int len, int c, short[] out, int off) {
+		if (c == 0) return;
+		int lc = LOG[c];
+		for (int i = 0; i < len; i ++) {
+			int xi = x[xoff+i];
+			if (xi != 0) out[off+i] ^= EXP[LOG[xi] + lc];
 		}
-        return new F2M12(sum);
 	}
 
-	public boolean equals(Object o) {
-		if (! (o instanceof F2M12)) return false;
-		F2M12 other = (F2M12)o;
-		for (int i = 0; i < co.length; i ++) {
-			if (co[i] != other.co[i]) return false;
-		}
-		return true;
+	/**
+	 * Packs an array of elements into a vector of packed elements
+	 */
+	public static short[] pack(F2M12[] X) {
+		short[] x = new short[X.length];
+		for (int i = 0; i < x.length; i ++) x[i] = X[i].co;
+		return x;
 	}
 
-	public String toString() {
-		String ret = "";
-		for (boolean b: co) ret += b ? "1" : "0";
-		return ret;
+	/**
+	 * Unpacks a vector of packed elements
+	 */
+	public static F2M12[] unpack(short[] x) {
+		F2M12[] X = new F2M12[x.length];
+		for (int i = 0; i < X.length; i ++) X[i] = VALUES[x[i] & N];
+		return X;
 	}
 
-	private static final F2M12 ZERO = new F2M12();
-	private static final F2M12 ONE = new F2M12(1);
+
+	private static final F2M12 ZERO = VALUES[0];
+	private static final F2M12 ONE = VALUES[1];
 
 	public static final F2M12Factory FACTORY = ZERO.new F2M12Factory();
 
@@ -220,10 +276,18 @@ public class F2M12 extends FieldElement<F2M12> {
 		@Override
 		public F2M12 get(Object o) {
 			if (o instanceof boolean[]) {
-				return new F2M12((boolean[])o);
+				boolean[] co = (boolean[])o;
+				if (co.length > 12) throw new IllegalArgumentException("Too many indices");
+				int bits = 0;
+				for (int i = 0; i < co.length; i ++) if (co[i]) bits |= 1 << i;
+				return VALUES[bits];
 			}
 			if (o instanceof int[]) {
-				return new F2M12((int[])o);
+				int[] vector = (int[])o;
+				if (vector.length > 12) throw new IllegalArgumentException("Too many arguments");
+				int bits = 0;
+				for (int i = 0; i < vector.length; i ++) if (vector[i] > 0) bits |= 1 << i;
+				return VALUES[bits];
 			}
 			throw new IllegalArgumentException("Unsupported argument: "+o);
 		}
@@ -233,7 +297,7 @@ public class F2M12 extends FieldElement<F2M12> {
 			F2M12[][] array = new F2M12[rows][columns];
 			for (int i = 0; i < rows; i ++) {
 				for (int j = 0; j < columns; j ++) {
-					array[i][j] = new F2M12();
+					array[i][j] = ZERO;
 				}
 			}
 			return array;
@@ -258,7 +322,7 @@ public class F2M12 extends FieldElement<F2M12> {
 		public F2M12[] getArray(int size) {
 			F2M12[] array = new F2M12[size];
 			for (int i = 0; i < size; i ++) {
-				array[i] = new F2M12();
+				array[i] = ZERO;
 			}
 			return array;
 		}
@@ -275,11 +339,7 @@ public class F2M12 extends FieldElement<F2M12> {
 
 		@Override
 		public F2M12 randomValue() {
-			boolean[] co = new boolean[12];
-			for (int i = 0; i < 12; i ++) {
-				co[i] = (Math.random() < .5);
-			}
-			return new F2M12(co);
+			return VALUES[(int)(Math.random() * 4096)];
         }
 
 		@SuppressWarnings("deprecation")
@@ -0,0 +1,238 @@
+package musictheory.algebra;
+
+/**
+ * Arithmetic modulo a fixed polynomial M over GF(2^12)
+ *
+ * Reduction is Barrett-style: the inverse of reverse(M) is computed once
+ * (and extended when a longer dividend shows up), so each reduction costs two
+ * multiplications instead of a long division. Inverses use a half-gcd,
+ * which is subquadratic in the degree of M. The Frobenius map A -> A^4096 is
+ * linear over GF(2^12), so once it has been asked for a few times its matrix
+ * is built, and each power after that is a single matrix-vector product.
+ *
+ * Safe to share between threads.
+ */
+public class F2M12Modulus {
+    private static final int CUTOFF = 64;   // classical Euclid below this degree
+    private static final int LAZY_FROBENIUS = 2;    // Frobenius calls made by squaring before building the matrix
+
+    private final F2M12Polynomial M;
+    private volatile short[] rmi;   // inverse of reverse(M), modulo x^rmi.length
+    private volatile short[][] Q;   // Frobenius matrix: Q[i] = x^(4096 i) mod M
+    private int squarings;          // Frobenius calls so far without Q (a lost update only delays Q)
+
+    /**
+     * Precompute reduction data for M, which must have positive degree
+     */
+    public F2M12Modulus(F2M12Polynomial M) {
+        if (M.getDegree() < 1) throw new IllegalArgumentException("Modulus must have positive degree");
+        this.M = M.copy();
+        // enough to reduce the product of two reduced polynomials
+        this.rmi = M.reversedInverse(M.getDegree());
+    }
+
+    /**
+     * The modulus itself
+     */
+    public F2M12Polynomial getModulus() {
+        return M.copy();
+    }
+
+    public int getDegree() {
+        return M.getDegree();
+    }
+
+    /**
+     * F mod M
+     */
+    public F2M12Polynomial reduce(F2M12Polynomial F) {
+        if (F.getDegree() < M.getDegree()) return F.copy();
+
+        int k = F.getDegree() - M.getDegree() + 1;  // length of the quotient
+        short[] rmi = this.rmi;
+        if (rmi.length < k) {
+            synchronized (this) {
+                rmi = this.rmi;
+                if (rmi.length < k) {
+                    rmi = M.reversedInverse(Math.max(k, 2*rmi.length));
+                    this.rmi = rmi;
+                }
+            }
+        }
+
+        F2M12Polynomial R = F.quotient(M, rmi).multiply(M);
+        R.addReplace(F);
+        return R;
+    }
+
+    /**
+     * A*B mod M
+     */
+    public F2M12Polynomial multiply(F2M12Polynomial A, F2M12Polynomial B) {
+        return reduce(A.multiply(B));
+    }
+
+    /**
+     * A^2 mod M
+     */
+    public F2M12Polynomial square(F2M12Polynomial A) {
+        return reduce(A.square());
+    }
+
+    /**
+     * A^4096 mod M, for A of degree less than M
+     *
+     * Coefficients are fixed by the Frobenius map, so (sum c_i x^i)^4096 = sum c_i x^(4096 i)
+     */
+    public F2M12Polynomial frobenius(F2M12Polynomial A) {
+        if (A.getDegree() >= M.getDegree()) throw new IllegalArgumentException("Polynomial is not reduced modulo M");
+
+        // most callers (e.g. irreducibility tests on random candidates) stop
+        //      after a step or two, so don't pay for the matrix right away
+        if (Q == null && squarings < LAZY_FROBENIUS) {
+            squarings ++;
+            for (int i = 0; i < 12; i ++) A = square(A);
+            return A;
+        }
+
+        short[][] Q = frobeniusMatrix();
+        short[] a = A.coefficients();
+
+        short[] p = new short[Q.length];
+        for (int i = 0; i < a.length; i ++) {
+            F2M12.addMultiple(Q[i], 0, Q[i].length, a[i], p, 0);
+        }
+        return new F2M12Polynomial(p);
+    }
+
+    private short[][] frobeniusMatrix() {
+        short[][] Q = this.Q;
+        if (Q != null) return Q;
+        synchronized (this) {
+            if (this.Q != null) return this.Q;
+
+            // x^4096 by twelve squarings
+            F2M12Polynomial xq = F2M12Polynomial.monomial(F2M12.FACTORY.one(), 1);
+            for (int i = 0; i < 12; i ++) xq = square(xq);
+
+            int n = M.getDegree();
+            Q = new short[n][];
+            F2M12Polynomial col = new F2M12Polynomial(F2M12.FACTORY.one());
+            for (int i = 0; i < n; i ++) {
+                Q[i] = col.coefficients();
+                col = multiply(col, xq);
+            }
+            this.Q = Q;
+            return Q;
+        }
+    }
+
+    /**
+     * The inverse of A modulo M, or null if A and M are not coprime
+     */
+    public F2M12Polynomial inverse(F2M12Polynomial A) {
+        F2M12Polynomial B = reduce(A);
+        if (B.isZero()) return null;
+
+        // run Euclid on (M, B), tracking only the multiplier of B
+        F2M12Polynomial[] R = { M.copy(), B };
+        F2M12Polynomial[] T = identity();
+        while (! R[1].isZero()) {
+            F2M12Polynomial[] S = hgcd(R[0], R[1]);
+            T = multiply(S, T);
+            R = apply(S, R[0], R[1]);
+            if (R[1].isZero()) break;
+
+            S = step(R[0], R[1]);
+            T = multiply(S, T);
+            R = apply(S, R[0], R[1]);
+        }
+
+        // R[0] = T[0]*M + T[1]*B is the gcd: there is an inverse iff it is scalar
+        if (R[0].getDegree() != 0) return null;
+        F2M12Polynomial I = T[1];
+        I.multiplyReplace(R[0].getHighestCoefficient().invert());
+        return reduce(I);
+    }
+
+
+
+
+
+    /*
+     *  HALF GCD
+     *
+     *  2x2 polynomial matrices are stored row-major as {t00, t01, t10, t11},
+     *  and map (A, B) to (t00 A + t01 B, t10 A + t11 B).
+     */
+
+    // returns T with (A', B') = T(A, B) and deg A' >= m > deg B', where m = ceil(deg A / 2)
+    private static F2M12Polynomial[] hgcd(F2M12Polynomial A, F2M12Polynomial B) {
+        int m = (A.getDegree() + 1) / 2;
+        if (B.getDegree() < m) return identity();
+
+        if (A.getDegree() < CUTOFF) {
+            // classical Euclid steps, until B drops below m
+            F2M12Polynomial[] T = identity();
+            while (B.getDegree() >= m) {
+                F2M12Polynomial[] S = step(A, B);
+                T = multiply(S, T);
+                F2M12Polynomial[] R = apply(S, A, B);
+                A = R[0];
+                B = R[1];
+            }
+            return T;
+        }
+
+        // the quotients of the top halves agree with those of A and B,
+        //      until the remainders reach half their degree
+        F2M12Polynomial[] T = hgcd(A.shiftRight(m), B.shiftRight(m));
+        F2M12Polynomial[] R = apply(T, A, B);
+        A = R[0];
+        B = R[1];
+        if (B.getDegree() < m) return T;
+
+        F2M12Polynomial[] S = step(A, B);
+        T = multiply(S, T);
+        R = apply(S, A, B);
+        A = R[0];
+        B = R[1];
+        if (B.getDegree() < m) return T;
+
+        int k = 2*m - A.getDegree();
+        return multiply(hgcd(A.shiftRight(k), B.shiftRight(k)), T);
+    }
+
+    // one Euclid step: (A, B) -> (B, A mod B)
+    private static F2M12Polynomial[] step(F2M12Polynomial A, F2M12Polynomial B) {
+        F2M12Polynomial Q = A.divide(B);
+        // -Q = Q in characteristic 2
+        return new F2M12Polynomial[]{
+            new F2M12Polynomial(), new F2M12Polynomial(F2M12.FACTORY.one()),
+            new F2M12Polynomial(F2M12.FACTORY.one()), Q
+        };
+    }
+
+    private static F2M12Polynomial[] identity() {
+        return new F2M12Polynomial[]{
+            new F2M12Polynomial(F2M12.FACTORY.one()), new F2M12Polynomial(),
+            new F2M12Polynomial(), new F2M12Polynomial(F2M12.FACTORY.one())
+        };
+    }
+
+    private static F2M12Polynomial[] multiply(F2M12Polynomial[] S, F2M12Polynomial[] T) {
+        return new F2M12Polynomial[]{
+            S[0].multiply(T[0]).add(S[1].multiply(T[2])),
+            S[0].multiply(T[1]).add(S[1].multiply(T[3])),
+            S[2].multiply(T[0]).add(S[3].multiply(T[2])),
+            S[2].multiply(T[1]).add(S[3].multiply(T[3]))
+        };
+    }
+
+    private static F2M12Polynomial[] apply(F2M12Polynomial[] T, F2M12Polynomial A, F2M12Polynomial B) {
+        return new F2M12Polynomial[]{
+            T[0].multiply(A).add(T[1].multiply(B)),
+            T[2].multiply(A).add(T[3].multiply(B))
+        };
+    }
+}
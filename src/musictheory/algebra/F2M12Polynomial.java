@@ -0,0 +1,481 @@
+package musictheory.algebra;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.jlinalg.polynomial.Polynomial;
+
+/**
+ * Dense polynomial over GF(2^12), backed by an array of packed coefficients (see F2M12.value())
+ *
+ * Methods ending in "Replace" modify this polynomial in place, as in JLinAlg's Matrix.
+ * All other methods leave their arguments untouched and return a new polynomial.
+ */
+public class F2M12Polynomial {
+    private static final int CUTOFF = 32;       // schoolbook multiplication below this length
+    private static final int NEWTON_CUTOFF = 64;    // schoolbook division below this length
+
+    private short[] co;     // co[i] is the coefficient of x^i; zero past deg
+    private int deg;        // -1 for the zero polynomial
+
+    /**
+     * The zero polynomial
+     */
+    public F2M12Polynomial() {
+        this.co = new short[0];
+        this.deg = -1;
+    }
+
+    /**
+     * The constant polynomial c
+     */
+    public F2M12Polynomial(F2M12 c) {
+        this(new short[]{ (short)c.value() });
+    }
+
+    /**
+     * The polynomial with packed coefficients co, where co[i] belongs to x^i. The array is copied.
+     */
+    public F2M12Polynomial(short[] co) {
+        this(Arrays.copyOf(co, co.length), co.length - 1);
+    }
+
+    /**
+     * Convert from a JLinAlg polynomial
+     */
+    public F2M12Polynomial(Polynomial<F2M12> P) {
+        this.co = new short[P.getDegree()+1];
+        while (! P.isZero()) {
+            co[P.getDegree()] = (short)P.getHighestCoefficient().value();
+            P = P.withoutHighestPower();
+        }
+        this.deg = co.length - 1;
+        trim();
+    }
+
+    private F2M12Polynomial(short[] co, int deg) {
+        // takes ownership of co
+        this.co = co;
+        this.deg = deg;
+        trim();
+    }
+
+    /**
+     * The monomial c*x^e
+     */
+    public static F2M12Polynomial monomial(F2M12 c, int e) {
+        short[] co = new short[e+1];
+        co[e] = (short)c.value();
+        return new F2M12Polynomial(co, e);
+    }
+
+    private void trim() {
+        while (deg >= 0 && co[deg] == 0) deg --;
+    }
+
+    private void ensureCapacity(int n) {
+        if (co.length < n) co = Arrays.copyOf(co, Math.max(n, 2*co.length));
+    }
+
+    /**
+     * Convert to a JLinAlg polynomial
+     */
+    public Polynomial<F2M12> toPolynomial() {
+        HashMap<Integer, F2M12> map = new HashMap<>();
+        for (int i = 0; i <= deg; i ++) {
+            if (co[i] != 0) map.put(i, F2M12.valueOf(co[i]));
+        }
+        if (map.isEmpty()) return new Polynomial<F2M12>(F2M12.FACTORY.zero());
+        return new Polynomial<>(map, F2M12.FACTORY);
+    }
+
+    public F2M12Polynomial copy() {
+        return new F2M12Polynomial(Arrays.copyOf(co, deg+1), deg);
+    }
+
+    /**
+     * Degree of this polynomial, or -1 if it is zero
+     */
+    public int getDegree() {
+        return deg;
+    }
+
+    public F2M12 getCoefficient(int i) {
+        if (i < 0 || i > deg) return F2M12.FACTORY.zero();
+        return F2M12.valueOf(co[i]);
+    }
+
+    public F2M12 getHighestCoefficient() {
+        return getCoefficient(deg);
+    }
+
+    /**
+     * The packed coefficients of this polynomial, from x^0 to x^deg
+     */
+    public short[] coefficients() {
+        return Arrays.copyOf(co, deg+1);
+    }
+
+    public boolean isZero() {
+        return deg < 0;
+    }
+
+    public boolean isOne() {
+        return deg == 0 && co[0] == 1;
+    }
+
+    /**
+     * Evaluates this polynomial at x, by Horner's rule
+     */
+    public F2M12 evaluate(F2M12 x) {
+        int X = x.value();
+        int Y = 0;
+        for (int i = deg; i >= 0; i --) Y = F2M12.multiply(Y, X) ^ co[i];
+        return F2M12.valueOf(Y);
+    }
+
+
+
+
+
+    /*
+     *  RING OPERATIONS
+     */
+
+    public F2M12Polynomial add(F2M12Polynomial other) {
+        F2M12Polynomial sum = copy();
+        sum.addReplace(other);
+        return sum;
+    }
+
+    /**
+     * Same as add: there are no negatives in characteristic 2
+     */
+    public F2M12Polynomial subtract(F2M12Polynomial other) {
+        return add(other);
+    }
+
+    public void addReplace(F2M12Polynomial other) {
+        ensureCapacity(other.deg+1);
+        for (int i = 0; i <= other.deg; i ++) co[i] ^= other.co[i];
+        deg = Math.max(deg, other.deg);
+        trim();
+    }
+
+    public F2M12Polynomial multiply(F2M12 c) {
+        F2M12Polynomial P = copy();
+        P.multiplyReplace(c);
+        return P;
+    }
+
+    public void multiplyReplace(F2M12 c) {
+        F2M12.scale(co, c.value(), co);
+        if (c.isZero()) deg = -1;
+    }
+
+    public F2M12Polynomial multiply(F2M12Polynomial other) {
+        short[] p = multiply(co, deg+1, other.co, other.deg+1);
+        return new F2M12Polynomial(p, p.length - 1);
+    }
+
+    public void multiplyReplace(F2M12Polynomial other) {
+        short[] p = multiply(co, deg+1, other.co, other.deg+1);
+        co = p;
+        deg = p.length - 1;
+        trim();
+    }
+
+    /**
+     * The square of this polynomial. In characteristic 2 this is just the square of each coefficient, spread to even powers.
+     */
+    public F2M12Polynomial square() {
+        F2M12Polynomial P = copy();
+        P.squareReplace();
+        return P;
+    }
+
+    public void squareReplace() {
+        if (deg < 0) return;
+        short[] sq = new short[2*deg+1];
+        for (int i = 0; i <= deg; i ++) {
+            sq[2*i] = (short)F2M12.multiply(co[i], co[i]);
+        }
+        co = sq;
+        deg = 2*deg;
+    }
+
+    /**
+     * The formal derivative of this polynomial. Even powers vanish in characteristic 2.
+     */
+    public F2M12Polynomial derivative() {
+        if (deg < 1) return new F2M12Polynomial();
+        short[] d = new short[deg];
+        for (int i = 1; i <= deg; i += 2) d[i-1] = co[i];
+        return new F2M12Polynomial(d, deg-1);
+    }
+
+    /**
+     * This polynomial divided by x^k, dropping the remainder
+     */
+    F2M12Polynomial shiftRight(int k) {
+        if (k > deg) return new F2M12Polynomial();
+        return new F2M12Polynomial(Arrays.copyOfRange(co, k, deg+1), deg-k);
+    }
+
+    /**
+     * This polynomial divided by its highest coefficient
+     */
+    public F2M12Polynomial monic() {
+        if (deg < 0) return copy();
+        return multiply(getHighestCoefficient().invert());
+    }
+
+    public boolean equals(Object o) {
+        if (! (o instanceof F2M12Polynomial)) return false;
+        F2M12Polynomial other = (F2M12Polynomial)o;
+        if (deg != other.deg) return false;
+        for (int i = 0; i <= deg; i ++) {
+            if (co[i] != other.co[i]) return false;
+        }
+        return true;
+    }
+
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i <= deg; i ++) h = 31*h + co[i];
+        return h;
+    }
+
+    public String toString() {
+        if (deg < 0) return "0";
+        String ret = "";
+        for (int i = 0; i <= deg; i ++) {
+            if (co[i] == 0) continue;
+            if (! ret.isEmpty()) ret += " + ";
+            ret += F2M12.valueOf(co[i]) + "x^" + i;
+        }
+        return ret;
+    }
+
+
+
+
+
+    /*
+     *  DIVISION
+     */
+
+    /**
+     * Quotient and remainder of this polynomial divided by d
+     */
+    public DivisionResult longDivision(F2M12Polynomial d) {
+        if (d.isZero()) throw new IllegalArgumentException("Cannot divide by zero");
+        if (deg < d.deg) return new DivisionResult(new F2M12Polynomial(), copy());
+
+        int k = deg - d.deg + 1;    // length of the quotient
+        if (k < NEWTON_CUTOFF || d.deg < NEWTON_CUTOFF) {
+            short[] r = Arrays.copyOf(co, deg+1);
+            short[] q = new short[k];
+            divide(r, deg, d.co, d.deg, q);
+            return new DivisionResult(new F2M12Polynomial(q, k-1), new F2M12Polynomial(r, d.deg-1));
+        }
+
+        F2M12Polynomial Q = quotient(d, d.reversedInverse(k));
+        F2M12Polynomial R = add(Q.multiply(d));
+        return new DivisionResult(Q, R);
+    }
+
+    /**
+     * The quotient of this polynomial divided by d
+     */
+    public F2M12Polynomial divide(F2M12Polynomial d) {
+        return longDivision(d).getQuotient();
+    }
+
+    /**
+     * The remainder of this polynomial divided by d
+     */
+    public F2M12Polynomial mod(F2M12Polynomial d) {
+        F2M12Polynomial R = copy();
+        R.modReplace(d);
+        return R;
+    }
+
+    public void modReplace(F2M12Polynomial d) {
+        if (d.isZero()) throw new IllegalArgumentException("Cannot divide by zero");
+        if (deg < d.deg) return;
+
+        int k = deg - d.deg + 1;
+        if (k < NEWTON_CUTOFF || d.deg < NEWTON_CUTOFF) {
+            divide(co, deg, d.co, d.deg, null);
+            deg = d.deg - 1;
+            trim();
+            return;
+        }
+
+        F2M12Polynomial Q = quotient(d, d.reversedInverse(k));
+        addReplace(Q.multiply(d));
+    }
+
+    /**
+     * Greatest common divisor of this polynomial and other, normalized to be monic
+     */
+    public F2M12Polynomial gcd(F2M12Polynomial other) {
+        F2M12Polynomial a = copy();
+        F2M12Polynomial b = other.copy();
+        while (! b.isZero()) {
+            a.modReplace(b);
+            F2M12Polynomial temp = a;
+            a = b;
+            b = temp;
+        }
+        return a.monic();
+    }
+
+    // quotient by d, given the inverse of reverse(d) modulo x^k, k = deg - d.deg + 1
+    F2M12Polynomial quotient(F2M12Polynomial d, short[] rdi) {
+        int k = deg - d.deg + 1;
+        // reverse(q) = reverse(this) * reverse(d)^-1 mod x^k
+        short[] ra = new short[k];
+        for (int i = 0; i < k; i ++) ra[i] = co[deg-i];
+        short[] rq = multiply(ra, k, rdi, Math.min(k, rdi.length));
+        short[] q = new short[k];
+        for (int i = 0; i < k; i ++) q[i] = rq[k-1-i];
+        return new F2M12Polynomial(q, k-1);
+    }
+
+    /**
+     * The power series inverse of reverse(this) = x^deg * this(1/x), modulo x^k
+     */
+    short[] reversedInverse(int k) {
+        short[] f = new short[deg+1];
+        for (int i = 0; i <= deg; i ++) f[i] = co[deg-i];
+        return inverseSeries(f, k);
+    }
+
+    private static short[] inverseSeries(short[] f, int k) {
+        // Newton iteration: g' = 2g - f g^2, which is f g^2 in characteristic 2
+        short[] g = { (short)F2M12.invert(f[0]) };
+        int l = 1;
+        while (l < k) {
+            l = Math.min(2*l, k);
+            short[] g2 = new short[2*g.length - 1];
+            for (int i = 0; i < g.length; i ++) g2[2*i] = (short)F2M12.multiply(g[i], g[i]);
+            short[] p = multiply(f, Math.min(f.length, l), g2, Math.min(g2.length, l));
+            g = Arrays.copyOf(p, l);
+        }
+        return g;
+    }
+
+    // classical division in place: r becomes the remainder, q (if not null) gets the quotient
+    private static void divide(short[] r, int dr, short[] d, int dd, short[] q) {
+        int linv = F2M12.invert(d[dd]);
+        for (int i = dr; i >= dd; i --) {
+            if (r[i] == 0) continue;
+            int c = F2M12.multiply(r[i], linv);
+            if (q != null) q[i-dd] = (short)c;
+            F2M12.addMultiple(d, 0, dd+1, c, r, i-dd);
+        }
+    }
+
+    /**
+     * Result of longDivision: this = quotient * divisor + remainder
+     */
+    public static class DivisionResult {
+        private final F2M12Polynomial Q;
+        private final F2M12Polynomial R;
+
+        DivisionResult(F2M12Polynomial Q, F2M12Polynomial R) {
+            this.Q = Q;
+            this.R = R;
+        }
+
+        public F2M12Polynomial getQuotient() {
+            return Q;
+        }
+
+        public F2M12Polynomial getRemainder() {
+            return R;
+        }
+    }
+
+
+
+
+
+    /*
+     *  MULTIPLICATION KERNELS
+     */
+
+    /**
+     * Product of the polynomials a[0..na) and b[0..nb), by Karatsuba on equal-length blocks
+     */
+    static short[] multiply(short[] a, int na, short[] b, int nb) {
+        if (na <= 0 || nb <= 0) return new short[0];
+        if (na > nb) {
+            short[] temp = a;
+            a = b;
+            b = temp;
+            int n = na;
+            na = nb;
+            nb = n;
+        }
+
+        short[] c = new short[na + nb - 1];
+        if (na <= CUTOFF) {
+            for (int i = 0; i < na; i ++) F2M12.addMultiple(b, 0, nb, a[i], c, i);
+            return c;
+        }
+
+        // split the longer factor into blocks the length of the shorter one
+        short[] block = new short[na];
+        for (int off = 0; off < nb; off += na) {
+            int len = Math.min(na, nb - off);
+            System.arraycopy(b, off, block, 0, len);
+            for (int i = len; i < na; i ++) block[i] = 0;
+
+            short[] z = karatsuba(a, 0, block, 0, na);
+            int end = Math.min(z.length, c.length - off);
+            for (int i = 0; i < end; i ++) c[off+i] ^= z[i];
+        }
+        return c;
+    }
+
+    private static short[] karatsuba(short[] a, int ao, short[] b, int bo, int n) {
+        short[] c = new short[2*n - 1];
+        if (n <= CUTOFF) {
+            for (int i = 0; i < n; i ++) F2M12.addMultiple(b, bo, n, a[ao+i], c, i);
+            return c;
+        }
+
+        int h = n / 2;      // low halves have length h
+        int k = n - h;      // high halves have length k >= h
+
+        short[] z0 = karatsuba(a, ao, b, bo, h);
+        short[] z2 = karatsuba(a, ao+h, b, bo+h, k);
+
+        short[] as = new short[k];
+        short[] bs = new short[k];
+        for (int i = 0; i < k; i ++) {
+            as[i] = a[ao+h+i];
+            bs[i] = b[bo+h+i];
+        }
+        for (int i = 0; i < h; i ++) {
+            as[i] ^= a[ao+i];
+            bs[i] ^= b[bo+i];
+        }
+        short[] z1 = karatsuba(as, 0, bs, 0, k);
+
+        // in characteristic 2, z1 - z0 - z2 = z1 + z0 + z2
+        for (int i = 0; i < z0.length; i ++) {
+            c[i] ^= z0[i];
+            z1[i] ^= z0[i];
+        }
+        for (int i = 0; i < z2.length; i ++) {
+            c[2*h+i] ^= z2[i];
+            z1[i] ^= z2[i];
+        }
+        for (int i = 0; i < z1.length; i ++) c[h+i] ^= z1[i];
+        return c;
+    }
+}
@@ -0,0 +1,156 @@
+package musictheory.algebra;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Factorization of polynomials over GF(2^12) into monic irreducibles
+ *
+ * Runs the usual three stages:
+ *  - square-free decomposition (Yun's algorithm, with square roots where the derivative vanishes)
+ *  - distinct-degree factorization, stepping x^(4096^i) with F2M12Modulus.frobenius
+ *  - equal-degree splitting (Cantor-Zassenhaus, with the trace to GF(2) in place of the (q-1)/2 power)
+ */
+public class Factorization {
+    private Factorization() {}  // static methods only
+
+    /**
+     * The monic irreducible factors of F, repeated according to multiplicity,
+     * ordered by degree and then by coefficients. F must be non-zero; its leading coefficient is dropped.
+     */
+    public static List<F2M12Polynomial> factor(F2M12Polynomial F) {
+        if (F.isZero()) throw new IllegalArgumentException("Cannot factor zero");
+
+        // a fixed seed: the factors don't depend on it, only the order they're found in
+        SplittableRandom rng = new SplittableRandom(0x6d75736963L);
+
+        List<F2M12Polynomial> factors = new ArrayList<>();
+        List<F2M12Polynomial> sqf = new ArrayList<>();
+        List<Integer> mult = new ArrayList<>();
+        squareFree(F.monic(), 1, sqf, mult);
+
+        for (int i = 0; i < sqf.size(); i ++) {
+            List<F2M12Polynomial> parts = new ArrayList<>();
+            List<Integer> degrees = new ArrayList<>();
+            distinctDegree(sqf.get(i), parts, degrees);
+
+            for (int j = 0; j < parts.size(); j ++) {
+                List<F2M12Polynomial> irreducibles = new ArrayList<>();
+                equalDegree(parts.get(j), degrees.get(j), rng, irreducibles);
+                for (F2M12Polynomial P: irreducibles) {
+                    for (int k = 0; k < mult.get(i); k ++) factors.add(P);
+                }
+            }
+        }
+
+        Collections.sort(factors, ORDER);
+        return factors;
+    }
+
+    private static final Comparator<F2M12Polynomial> ORDER = (P, Q) -> {
+        if (P.getDegree() != Q.getDegree()) return Integer.compare(P.getDegree(), Q.getDegree());
+        for (int i = P.getDegree(); i >= 0; i --) {
+            int c = Integer.compare(P.getCoefficient(i).value(), Q.getCoefficient(i).value());
+            if (c != 0) return c;
+        }
+        return 0;
+    };
+
+    // appends square-free, pairwise coprime S_i with F = prod S_i^mult_i (F monic)
+    private static void squareFree(F2M12Polynomial F, int m, List<F2M12Polynomial> sqf, List<Integer> mult) {
+        F2M12Polynomial c = F.gcd(F.derivative());
+        F2M12Polynomial w = F.divide(c);
+
+        // w is the product of the factors whose multiplicity is odd; peel them off one multiplicity at a time
+        int i = 1;
+        while (w.getDegree() > 0) {
+            F2M12Polynomial y = w.gcd(c);
+            F2M12Polynomial z = w.divide(y);
+            if (z.getDegree() > 0) {
+                sqf.add(z);
+                mult.add(i*m);
+            }
+            i ++;
+            w = y;
+            c = c.divide(y);
+        }
+
+        // what remains is a polynomial in x^2, hence a square
+        if (c.getDegree() > 0) squareFree(sqrt(c), 2*m, sqf, mult);
+    }
+
+    // the square root of a polynomial in x^2: coefficients are squares since the Frobenius map is onto
+    private static F2M12Polynomial sqrt(F2M12Polynomial F) {
+        short[] co = F.coefficients();
+        short[] root = new short[co.length/2 + 1];
+        for (int i = 0; i < root.length; i ++) {
+            root[i] = (short)F2M12.pow(co[2*i], 2048);  // a^2048 squared is a^4096 = a
+        }
+        return new F2M12Polynomial(root);
+    }
+
+    // splits square-free monic F into parts[j], the product of its irreducible factors of degree degrees[j]
+    private static void distinctDegree(F2M12Polynomial F, List<F2M12Polynomial> parts, List<Integer> degrees) {
+        if (F.getDegree() <= 1) {
+            if (F.getDegree() == 1) {
+                parts.add(F);
+                degrees.add(1);
+            }
+            return;
+        }
+
+        // x^(4096^i) - x is the product of all monic irreducibles of degree dividing i
+        // steps stay modulo F, which is fine since the remaining part G divides F
+        F2M12Modulus mod = new F2M12Modulus(F);
+        F2M12Polynomial x = F2M12Polynomial.monomial(F2M12.FACTORY.one(), 1);
+        F2M12Polynomial xq = mod.reduce(x);
+        F2M12Polynomial G = F;
+        for (int i = 1; 2*i <= G.getDegree(); i ++) {
+            xq = mod.frobenius(xq);
+            F2M12Polynomial g = G.gcd(xq.subtract(x));
+            if (g.getDegree() > 0) {
+                parts.add(g);
+                degrees.add(i);
+                G = G.divide(g);
+            }
+        }
+        if (G.getDegree() > 0) {
+            parts.add(G);
+            degrees.add(G.getDegree());
+        }
+    }
+
+    // splits F, a product of distinct monic irreducibles of degree d, into those irreducibles
+    private static void equalDegree(F2M12Polynomial F, int d, SplittableRandom rng, List<F2M12Polynomial> out) {
+        int n = F.getDegree();
+        if (n == d) {
+            out.add(F);
+            return;
+        }
+
+        F2M12Modulus mod = new F2M12Modulus(F);
+        while (true) {
+            short[] co = new short[n];
+            for (int i = 0; i < n; i ++) co[i] = (short)rng.nextInt(4096);
+            F2M12Polynomial A = new F2M12Polynomial(co);
+
+            // modulo each factor, A lies in GF(2^(12d)), and its trace to GF(2) is 0 or 1,
+            //      each with probability 1/2, independently over the factors
+            F2M12Polynomial T = A.copy();
+            for (int j = 1; j < 12*d; j ++) {
+                A = mod.square(A);
+                T.addReplace(A);
+            }
+
+            F2M12Polynomial g = F.gcd(T);
+            if (g.getDegree() > 0 && g.getDegree() < n) {
+                equalDegree(g, d, rng, out);
+                equalDegree(F.divide(g), d, rng, out);
+                return;
+            }
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package musictheory.algebra;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 import org.jlinalg.polynomial.Polynomial;
 import org.jlinalg.polynomial.PolynomialFactory;
-import org.jlinalg.polynomial.PolynomialLongDivisionResult;
-import org.jlinalg.Matrix;
-import org.jlinalg.Vector;
 
 import musictheory.music.Phrase;
 import musictheory.music.Chord;
@@ -19,8 +21,8 @@ import musictheory.music.Note;
  * Also provides some convenience methods for working with polynomials.
  * Most of these are static, but since picking M such that P1=~P2 depends on a,
  * calling "irreducibleFor(P1,P2)" requires an already-created class. You may
- * want to save your polynomials somehow to avoid having to regenerate them
- * every time.
+ * want to save your polynomials in an IrreducibleCatalog to avoid having to
+ * regenerate them every time.
  */
 public class Galois implements Algebra {
     // Polynomial constructors weren't written very well.
@@ -34,10 +36,11 @@ public class Galois implements Algebra {
 
     /** the element this instance uses for generating GF(2^12) */
     public final F2M12 a;           // generator
-    private ArrayList<F2M12> a_;    // powers of a
+    private final GaloisTransform T;    // evaluation/interpolation at powers of a
 
     /** the characteristic polynomial M to use in calculating inverses */
     public final Polynomial<F2M12> M;   // characteristic polynomial
+    private final F2M12Modulus M_;      // reduction data for M, shared by every inverse
 
     /**
      * Constructs a GaloisAlgebra using default_a for the generator, and omits M
@@ -58,35 +61,37 @@ public class Galois implements Algebra {
      * Define both M and a explicitly
      */
     public Galois(F2M12 a, Polynomial<F2M12> M) {
-        this.a = a;
-        this.M = M;
-
-        this.a_ = new ArrayList<>();
-        a_.add(F2M12.FACTORY.one());
+        this(a, M, M == null ? null : new F2M12Polynomial(M));
     }
 
-    private F2M12 a_(int i) {
-        if (i < a_.size()) return a_.get(i);
-        // dynamically expand powers of a stored in memory
-        for (int j = a_.size(); j <= i; j ++) {
-            a_.add( a_.get(j-1).multiply(a) );
-        }
-        return a_.get(i);
+    /**
+     * Use generator a, with the irreducible M of degree t recorded in catalog.
+     * If the catalog has none yet, one is searched for (see randomIrreducible) and recorded.
+     */
+    public Galois(F2M12 a, IrreducibleCatalog catalog, int t) throws IOException {
+        this(a, catalogued(catalog, a, t));
     }
 
-    private Matrix<F2M12> Hi(int t) {
-        Matrix<F2M12> H = new Matrix<>(t, t, F2M12.FACTORY);
-        for (int i = 0; i < t; i ++) {
-            for (int j = 0; j < t; j ++) {
-                H.set(i+1,j+1, a_(i*j));
-            }
-        }
-        return H.inverse(); // this takes a little time, not much
+    private Galois(F2M12 a, F2M12Polynomial M) {
+        this(a, M.toPolynomial(), M);
     }
 
+    private Galois(F2M12 a, Polynomial<F2M12> M, F2M12Polynomial M_) {
+        if (a.isZero()) throw new IllegalArgumentException("Generator must be non-zero");
+        this.a = a;
+        this.M = M;
+        this.M_ = M_ == null ? null : new F2M12Modulus(M_);
+        this.T = new GaloisTransform(a);
+    }
 
-
-
+    private static F2M12Polynomial catalogued(IrreducibleCatalog catalog, F2M12 a, int t) throws IOException {
+        F2M12Polynomial M = catalog.getIrreducible(a, t);
+        if (M == null) {
+            M = new IrreducibleSearch(t).find();
+            catalog.putIrreducible(a, M);
+        }
+        return M;
+    }
 
     public Phrase sum(Phrase... Ps) {
         if (! Phrase.sameKey(Ps))
@@ -94,11 +99,12 @@ public class Galois implements Algebra {
         if (! Phrase.sameTempo(Ps))
             throw new IllegalArgumentException("Cannot mix phrases of different tempo");
 
-        Polynomial<F2M12> sum = new Polynomial<F2M12>(F2M12.FACTORY.zero());
-
-        for (Phrase P: Ps) sum = sum.add(asPolynomial(P));
+        // the transform is linear, so this stays with the chords' values
+        //      and only interpolates if lengths differ or the top coefficient cancels
+        GaloisPhrase sum = asValues(Ps[0]);
+        for (int i = 1; i < Ps.length; i ++) sum = sum.add(asValues(Ps[i]));
 
-        return asPhrase(sum, Ps[0].key, Ps[0].bpm, Ps[0].cpb);
+        return asPhrase(sum.trim(), Ps[0].key, Ps[0].bpm, Ps[0].cpb);
     }
 
     public Phrase magnify(float A, Phrase P) {
@@ -115,21 +121,22 @@ public class Galois implements Algebra {
         P1 = P1.expand(cpb);
         P2 = P2.expand(cpb);
 
-        Polynomial<F2M12> F = asPolynomial(P1).multiply(asPolynomial(P2));
-        return asPhrase(F, P1.key, P1.bpm, cpb);
+        GaloisPhrase F = asValues(P1).multiply(asValues(P2));
+        return asPhrase(F.trim(), P1.key, P1.bpm, cpb);
     }
 
     public Phrase inverse(Phrase P) {
         if (M == null) throw new UnsupportedOperationException("This Galois has no M");
-        Polynomial<F2M12> F = asPolynomial(P);
-        Polynomial<F2M12> x = F.longDivision(M).getRemainder();
-        Polynomial<F2M12> xi = inverse(x);
+        F2M12Polynomial F = asPolynomial(P);
+        F2M12Polynomial x = M_.reduce(F);
+        F2M12Polynomial xi = M_.inverse(x);
+        if (xi == null) throw new IllegalArgumentException("Phrase has no inverse modulo M");
         // let F' = q*M + x', where q*M = F - x. In other words, F' = F + dx
-        Polynomial<F2M12> I = F.add( xi.subtract(x) );
+        F2M12Polynomial I = F.add( xi.subtract(x) );
         // result will be same length as P: only degrees < M change,
         //      but this changes the entire chord sequence
 
-        return asPhrase(I, P.key, P.bpm, P.cpb);
+        return asPhrase(new GaloisPhrase(T, I), P.key, P.bpm, P.cpb);
     }
 
 
@@ -140,56 +147,60 @@ public class Galois implements Algebra {
 
 
     /*
-     *  POLYNOMIAL FUNCTIONS
+     *  FINDING AN IRREDUCIBLE POLYNOMIAL
      */
 
-    private Polynomial<F2M12> inverse(Polynomial<F2M12> a) {
-        Polynomial<F2M12> xp = new Polynomial<>(F2M12.FACTORY.zero());
-        Polynomial<F2M12> x = new Polynomial<>(F2M12.FACTORY.one());
-
-        PolynomialLongDivisionResult<F2M12> divmod = M.longDivision(a);
-        while (! divmod.getRemainder().isZero()) {
-            Polynomial<F2M12> temp = x;
-            x = xp.subtract( divmod.getQuotient().multiply(x) );    // x = xp - q*x
-            xp = temp;
-            temp = divmod.getRemainder();
-            divmod = a.longDivision(temp);
-            a = temp;
-        }
-
-        // if last non-zero remainder is non-scalar, there is no inverse
-        if (a.getDegree() != 0) return null;
-        // normalize last non-zero remainder
-        x = x.multiply( new Polynomial<F2M12>(a.getHighestCoefficient().invert()) );
-        return x;
+    /**
+     * Gives a polynomial which guarantees that, when used as M with a GaloisAlgebra with the same generator a, P1 = ~P2 and P2 = ~P1
+     */
+    public Polynomial<F2M12> irreducibleFor(Phrase P1, Phrase P2) {
+        // this is NOT a static method
+        // to use, you need to create the Galois Algebra,
+        //  ask for the appropriate irreducible,
+        //  save it, then start over and create the Galois with it
+        return pairPolynomial(P1, P2).toPolynomial();
     }
 
-    private F2M12 evaluate(Polynomial<F2M12> F, int i) {
-        // evaluates F[a^i]
-        F2M12 Y = F2M12.FACTORY.zero();
-        while (! F.isZero()) {
-            Y = Y.add(F.getHighestCoefficient().multiply(a_(i*F.getDegree())));
-            F = F.withoutHighestPower();
+    /**
+     * As irreducibleFor(P1,P2), but looks the result up in catalog first, and records it there if it is missing
+     */
+    public Polynomial<F2M12> irreducibleFor(Phrase P1, Phrase P2, IrreducibleCatalog catalog) throws IOException {
+        checkPair(P1, P2);
+        byte[] digest = digest(P1, P2);
+        F2M12Polynomial X = catalog.getIrreducibleFor(a, digest);
+        if (X == null) {
+            X = pairPolynomial(P1, P2);
+            catalog.putIrreducibleFor(a, digest, X);
         }
-        return Y;
+        return X.toPolynomial();
     }
 
+    private F2M12Polynomial pairPolynomial(Phrase P1, Phrase P2) {
+        checkPair(P1, P2);
 
+        F2M12Polynomial X = asPolynomial(P1).multiply(asPolynomial(P2));
+        X.addReplace(new F2M12Polynomial(F2M12.FACTORY.one()));   // X - 1 = X + 1
 
-
-
-    /*
-     *  FINDING AN IRREDUCIBLE POLYNOMIAL
-     */
+        // see irreducibleFactorsFor for the factors of X
+        return X;
+    }
 
     /**
-     * Gives a polynomial which guarantees that, when used as M with a GaloisAlgebra with the same generator a, P1 = ~P2 and P2 = ~P1
+     * The distinct monic irreducible factors of irreducibleFor(P1,P2), in increasing degree.
+     * P1*P2 = 1 modulo each of them, so any one works as M in its place.
      */
-    public Polynomial<F2M12> irreducibleFor(Phrase P1, Phrase P2) {
-        // this is NOT a static method
-        // to use, you need to create the Galois Algebra,
-        //  ask for the appropriate irreducible,
-        //  save it, then start over and create the Galois with it
+    public List<Polynomial<F2M12>> irreducibleFactorsFor(Phrase P1, Phrase P2) {
+        List<Polynomial<F2M12>> factors = new ArrayList<>();
+        F2M12Polynomial last = null;
+        for (F2M12Polynomial F: Factorization.factor(pairPolynomial(P1, P2))) {
+            // repeated factors come out adjacent
+            if (! F.equals(last)) factors.add(F.toPolynomial());
+            last = F;
+        }
+        return factors;
+    }
+
+    private void checkPair(Phrase P1, Phrase P2) {
         if (! Phrase.sameKey(P1, P2))
             throw new IllegalArgumentException("Cannot mix phrases of different key");
         if (! Phrase.sameTempo(P1, P2))
@@ -199,104 +210,71 @@ public class Galois implements Algebra {
                 "Phrases have different chords/beat, so the results would not make sense."
                     + "\nExpand phrases to their lcm_cpb value before using this method."
             );
+    }
 
-        Polynomial<F2M12> X = asPolynomial(P1).multiply(asPolynomial(P2));
-        X = X.subtract(new Polynomial<F2M12>(F2M12.FACTORY.one()));
-
-        // user may wish to factor X if possible, but that's their problem
-        return X;
+    private byte[] digest(Phrase P1, Phrase P2) {
+        // SHA-256 over both chord sequences, as they enter asPolynomial
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is unavailable", e);   // every Java platform has it
+        }
+        ByteBuffer b = ByteBuffer.allocate(4 + 2*Math.max(P1.length, P2.length));
+        for (Phrase P: new Phrase[]{ P1, P2 }) {
+            b.clear();
+            b.putInt(P.length);
+            for (int i = 0; i < P.length; i ++) b.putShort((short)asCoefficient(P.C(i), P.key).value());
+            b.flip();
+            md.update(b);
+        }
+        return md.digest();
     }
 
     /**
      * Returns a random irreducible polynomial over GF(2^12) of degree t.
-     * Warning: this function involves randomly generating a polynomial, then testing whether it is irreducible. It can take some time, and reports its progress in System.out
+     * Warning: this function involves randomly generating polynomials, then testing whether they are irreducible. It can take some time.
+     * It searches on all processors; use IrreducibleSearch directly to control the workers or monitor progress.
      */
     public static Polynomial<F2M12> randomIrreducible(int t) {
-        Polynomial<F2M12> F = randomPolynomial(t);
-        // System.out.println("*** Trying:\n\t"+F);
-        int n = 0;
-        while (! isirreducible(F)) { // may take time
-            F = randomPolynomial(t);
-            System.out.print((++n)+"\t");
-            // System.out.println("*** Trying:\n\t"+F);
-        }
-        System.out.println("\nTook "+n+" attempts.");
-        return F;
+        return new IrreducibleSearch(t).find().toPolynomial();
     }
 
     /**
-     * Returns a random polynomial over GF(2^12) of degree t
+     * Returns true iff F is an irreducible polynomial over GF(2^12)
      */
-    private static Polynomial<F2M12> randomPolynomial(int t) {
-        HashMap<Integer,F2M12> map = new HashMap<>();
-        for (int i = 0; i < t; i ++) {
-            map.put(i, F2M12.FACTORY.randomValue());
-        }
-        map.put(t, F2M12.FACTORY.one());
-        return new Polynomial<>(map, F2M12.FACTORY);
+    public static boolean isirreducible(Polynomial<F2M12> F) {
+        return isirreducible(new F2M12Polynomial(F));
     }
 
     /**
      * Returns true iff F is an irreducible polynomial over GF(2^12)
      */
-    public static boolean isirreducible(Polynomial<F2M12> F) {
+    public static boolean isirreducible(F2M12Polynomial F) {
+        return isirreducible(F, () -> false);
+    }
+
+    // as above, but gives up (returning false) as soon as stop is true
+    static boolean isirreducible(F2M12Polynomial F, BooleanSupplier stop) {
         // insofar as scalars are...scalar, p is irreducible . . . I guess
         if (F.getDegree() == 0) return true;
         // insofar as the leading coefficient can be factored out, p is not irreducible
         if (!F.getHighestCoefficient().isOne()) return false;
 
+        // Ben-Or: F is irreducible iff gcd(F, x^(4096^i) - x) = 1 for all i <= deg/2
+        // x^(4096^i) is carried forward by one Frobenius step per iteration
+        F2M12Modulus mod = new F2M12Modulus(F);
+        F2M12Polynomial x = F2M12Polynomial.monomial(F2M12.FACTORY.one(), 1);
+        F2M12Polynomial xq = mod.reduce(x);
         for (int i = 1; i <= F.getDegree()/2; i ++) {
-            HashMap<Integer,F2M12> map = new HashMap<>();
-            map.put(1, F2M12.FACTORY.one());
-            Polynomial<F2M12> x = new Polynomial<>(map, F2M12.FACTORY);
-
+            if (stop.getAsBoolean()) return false;
+            xq = mod.frobenius(xq);
             // if the gcd isn't 1, then F isn't irreducible
-            if (F.gcd(pow2to(x,12*i,F).subtract(x)).getDegree() > 0) return false;
-
+            if (F.gcd(xq.subtract(x)).getDegree() > 0) return false;
         }
         return true;
     }
 
-    private static Polynomial<F2M12> pow2to(Polynomial<F2M12> P, int e, Polynomial<F2M12> F) {
-        // finds P^(2^e) mod F
-        for (int i = 0; i < e; i ++) {
-            P = P.multiply(P);
-            P = P.longDivision(F).getRemainder();
-        }
-        return P;
-    }
-
-    private static Polynomial<F2M12> fmod(Polynomial<F2M12> a, Polynomial<F2M12> b) {
-        int deg_a = a.getDegree();
-        int deg_b = b.getDegree();
-        // base case: a is smaller than b
-        if (deg_a < deg_b) return a;
-
-        // k is the number of times deg_b can be mutliplied by 2 and still be under deg_a
-        int k = (int)(Math.log(deg_a/deg_b)/Math.log(2)); // aka log2(deg_a) - log2(deg_b)
-        // p is that actual power of k
-        int p = 1;
-        for (int i = 1; i <= k; i ++) p *= 2;
-        // d is the remaing difference in degrees after raising b ^ (2^k)
-        int d = deg_a - deg_b*p;
-
-        // product needed to eliminate leading coefficient from a
-        F2M12 q = a.getHighestCoefficient().divide(b.getHighestCoefficient().pow(p));
-
-        HashMap<Integer,F2M12> map = new HashMap<>();
-        Polynomial<F2M12> bt = b;   // access each term in b by successive truncations
-        for (int i = deg_b; i >= 0; i --) {
-            if (bt.getDegree() < i) continue;   // b has no x^i term
-            // since p is a power of 2 (characteristic of F2M12),
-            // b^p has each coefficient bi^p (Frobenius automorphism)
-            map.put(i*p + d, q.multiply(bt.getHighestCoefficient().pow(p)));
-            bt = bt.withoutHighestPower();
-        }
-        Polynomial<F2M12> bp = new Polynomial<>(map, F2M12.FACTORY);
-        // bp is a product of b, and thus a - bp the same modulus
-        return fmod(a.subtract(bp), b);
-    }
-
 
 
     /*
@@ -304,14 +282,13 @@ public class Galois implements Algebra {
      */
 
     private F2M12 asCoefficient(Chord C, int k) {
-        boolean[] co = new boolean[12];
+        int co = 0;
 
         for (int i = 0; i < C.length; i ++) {
-            int f = Note.f(C.N(i).p, k);
-            co[f] = co[f] || C.A(i) > 0;
+            if (C.A(i) > 0) co |= 1 << Note.f(C.N(i).p, k);
         }
 
-        return new F2M12(co);
+        return F2M12.valueOf(co);
     }
 
     private Chord asChord(F2M12 X, int k) {
@@ -334,29 +311,27 @@ public class Galois implements Algebra {
         return new Chord(notes, amps);
     }
 
-    private Polynomial<F2M12> asPolynomial(Phrase P) {
-        Vector<F2M12> C = new Vector<>(P.length, F2M12.FACTORY);
-
+    private GaloisPhrase asValues(Phrase P) {
+        short[] values = new short[P.length];
         for (int i = 0; i < P.length; i ++) {
-            C.set(i+1, asCoefficient(P.C(i), P.key));
-        }
-
-        Vector<F2M12> V = Hi(C.length()).multiply(C);
-
-        // convert to map for polynomial construction
-        HashMap<Integer, F2M12> coef = new HashMap<>();
-        for (int i = 0; i < V.length(); i ++) {
-            coef.put(i, V.getEntry(i+1));
+            values[i] = (short)asCoefficient(P.C(i), P.key).value();
         }
+        return new GaloisPhrase(T, values);
+    }
 
-        return new Polynomial<>(coef, F2M12.FACTORY);
+    private F2M12Polynomial asPolynomial(Phrase P) {
+        // solve the Vandermonde system in powers of a
+        return asValues(P).toPolynomial();
     }
 
-    private Phrase asPhrase(Polynomial<F2M12> F, int key, int bpm, int cpb) {
-        Chord[] chords = new Chord[F.getDegree()+1];
+    private Phrase asPhrase(GaloisPhrase F, int key, int bpm, int cpb) {
+        // a polynomial F comes as its values at a^0, a^1, ..., a^deg(F)
+        //      (the zero polynomial still gives one, silent, chord)
+        short[] values = F.values();
 
+        Chord[] chords = new Chord[values.length];
         for (int i = 0; i < chords.length; i ++) {
-            chords[i] = asChord(evaluate(F, i), key);
+            chords[i] = asChord(F2M12.valueOf(values[i]), key);
         }
 
         return new Phrase(chords, key, bpm, cpb);
@@ -0,0 +1,137 @@
+package musictheory.algebra;
+
+import java.util.Arrays;
+
+/**
+ * A polynomial over GF(2^12) held by its values at 1, q, q^2, ... (see GaloisTransform)
+ *
+ * This is the form a phrase is in before asPolynomial and after asPhrase, so operations
+ * that stay in it skip both the interpolation and the evaluation. Sums of phrases of the
+ * same length, and multiples by a constant, take linear time. The coefficient form is
+ * interpolated (once) only when something needs it, like a product that raises the degree.
+ *
+ * The polynomial held is the unique F with deg F < length() taking the values.
+ * It need not have degree length()-1; trim() gives the shortest form.
+ */
+public class GaloisPhrase {
+    private final GaloisTransform T;
+    private final short[] values;   // F(q^i) for i < values.length
+    private volatile short[] co;    // coefficients of F, interpolated on demand
+
+    /**
+     * Values F(q^i) for i in [0, values.length), where q is the ratio of T
+     */
+    public GaloisPhrase(GaloisTransform T, short[] values) {
+        this(T, values.clone(), null);
+        if (values.length == 0) throw new IllegalArgumentException("Need at least one value");
+        if (values.length > T.order) throw new IllegalArgumentException(
+            "Cannot hold "+values.length+" values: q only has "+T.order+" distinct powers"
+        );
+    }
+
+    /**
+     * The values of F at its deg(F)+1 first points (a single point for zero)
+     */
+    public GaloisPhrase(GaloisTransform T, F2M12Polynomial F) {
+        this(T, T.evaluate(F.coefficients(), Math.max(F.getDegree()+1, 1)), F.coefficients());
+    }
+
+    // takes ownership of both arrays
+    private GaloisPhrase(GaloisTransform T, short[] values, short[] co) {
+        this.T = T;
+        this.values = values;
+        this.co = co;
+    }
+
+    public int length() {
+        return values.length;
+    }
+
+    public F2M12 getValue(int i) {
+        return F2M12.valueOf(values[i]);
+    }
+
+    /**
+     * Packed values (see F2M12.value()), not to be modified
+     */
+    short[] values() {
+        return values;
+    }
+
+    public F2M12Polynomial toPolynomial() {
+        return new F2M12Polynomial(coefficients());
+    }
+
+    private short[] coefficients() {
+        short[] c = co;
+        if (c == null) co = c = T.interpolate(values);
+        return c;
+    }
+
+    public int getDegree() {
+        // only interpolate when the top coefficient vanishes
+        if (co == null && T.leadingCoefficient(values) != 0) return values.length - 1;
+        short[] c = coefficients();
+        int d = c.length - 1;
+        while (d >= 0 && c[d] == 0) d --;
+        return d;
+    }
+
+    /**
+     * The same polynomial at only its first max(deg+1, 1) points, as Galois.asPhrase gives it
+     */
+    public GaloisPhrase trim() {
+        int n = Math.max(getDegree()+1, 1);
+        if (n == values.length) return this;
+
+        short[] c = co;
+        return new GaloisPhrase(T,
+            Arrays.copyOf(values, n),
+            c == null ? null : Arrays.copyOf(c, n)
+        );
+    }
+
+    /**
+     * The same polynomial at m >= length() points
+     */
+    public GaloisPhrase extend(int m) {
+        if (m < values.length) throw new IllegalArgumentException("Cannot extend to fewer points");
+        if (m == values.length) return this;
+
+        short[] c = coefficients();
+        return new GaloisPhrase(T, T.evaluate(c, m), Arrays.copyOf(c, m));
+    }
+
+    public GaloisPhrase add(GaloisPhrase Q) {
+        check(Q);
+        // the shorter one has to be extended: its values there aren't known yet
+        GaloisPhrase A = this, B = Q;
+        if (A.values.length < B.values.length) A = A.extend(B.values.length);
+        if (B.values.length < A.values.length) B = B.extend(A.values.length);
+
+        short[] y = new short[A.values.length];
+        F2M12.add(A.values, B.values, y);
+        return new GaloisPhrase(T, y, null);
+    }
+
+    public GaloisPhrase multiply(F2M12 c) {
+        short[] y = new short[values.length];
+        F2M12.scale(values, c.value(), y);
+        return new GaloisPhrase(T, y, null);
+    }
+
+    public GaloisPhrase multiply(GaloisPhrase Q) {
+        check(Q);
+        // constants don't change the degree, so the product is pointwise
+        if (values.length == 1) return Q.multiply(getValue(0));
+        if (Q.values.length == 1) return multiply(Q.getValue(0));
+
+        // otherwise the product needs points neither has, so go through the coefficients
+        return new GaloisPhrase(T, toPolynomial().multiply(Q.toPolynomial()));
+    }
+
+    private void check(GaloisPhrase Q) {
+        if (! T.q.equals(Q.T.q))
+            throw new IllegalArgumentException("Cannot mix values at powers of different q");
+    }
+}
@@ -0,0 +1,147 @@
+package musictheory.algebra;
+
+/**
+ * Fast evaluation and interpolation of polynomials over GF(2^12) at the
+ * geometric sequence of points 1, q, q^2, ...
+ *
+ * Galois maps a phrase of t chords to the polynomial taking each chord at a^i,
+ * so both directions are a Vandermonde system in powers of a. Both are done
+ * here with a constant number of polynomial products (a chirp transform), relying on
+ * the identity ij = C(i+j,2) - C(i,2) - C(j,2), which needs no division by 2.
+ *
+ * Polynomials and values are vectors of packed elements (see F2M12.value()),
+ * with coefficient i belonging to x^i.
+ */
+public class GaloisTransform {
+    private static final int N = 4095;  // order of the multiplicative group of GF(2^12)
+
+    private final int lq;           // discrete log of q
+
+    /** the ratio of the geometric sequence of points */
+    public final F2M12 q;
+
+    /** the multiplicative order of q: the most points that can be interpolated */
+    public final int order;
+
+    /**
+     * Transform at the powers of a non-zero q
+     */
+    public GaloisTransform(F2M12 q) {
+        if (q.isZero()) throw new IllegalArgumentException("q must be non-zero");
+        this.q = q;
+        this.lq = F2M12.log(q.value());
+        int g = N, l = lq;
+        while (l != 0) {
+            int r = g % l;
+            g = l;
+            l = r;
+        }
+        this.order = N / g;
+    }
+
+    /**
+     * Returns F(q^i) for i in [0,m), where F has the coefficients co
+     */
+    public short[] evaluate(short[] co, int m) {
+        int n = co.length;
+        short[] y = new short[m];
+        if (n == 0 || m == 0) return y;
+
+        // F(q^i) = q^-C(i,2) * sum_j (co_j q^-C(j,2)) q^C(i+j,2)
+        short[] u = new short[n];   // reversed, so the sum is a convolution
+        for (int j = 0; j < n; j ++) {
+            u[n-1-j] = (short)F2M12.multiply(co[j], qC(j, -1));
+        }
+        short[] b = new short[n+m-1];
+        for (int k = 0; k < b.length; k ++) b[k] = (short)qC(k, 1);
+
+        short[] c = F2M12Polynomial.multiply(u, n, b, b.length);
+        for (int i = 0; i < m; i ++) {
+            y[i] = (short)F2M12.multiply(c[n-1+i], qC(i, -1));
+        }
+        return y;
+    }
+
+    /**
+     * Returns the coefficients of the unique F of degree < n with F(q^i) = values[i],
+     * where n = values.length must not exceed the order of q
+     */
+    public short[] interpolate(short[] values) {
+        int n = values.length;
+        if (n > order) throw new IllegalArgumentException(
+            "Cannot interpolate "+n+" points: q only has "+order+" distinct powers"
+        );
+        if (n == 0) return new short[0];
+
+        short[] s = qFactorials(n);
+        short[] c = lagrange(values, s);
+
+        // F/M = sum_k (sum_i c_i q^ik) x^-(k+1), and the inner sums are
+        // just the evaluation of c. Reversing both sides, rev(F) = rev(M) * S mod x^n
+        short[] S = evaluate(c, n);
+
+        // rev(M) = prod_i (1 + q^i y), whose k-th coefficient is the
+        // q-binomial q^C(k,2) (1 + q^n)...(1 + q^(n-k+1)) / s[k]
+        short[] Mr = new short[n];
+        int num = 1;
+        for (int k = 0; k < n; k ++) {
+            if (k > 0) num = F2M12.multiply(num, 1 ^ q(n-k+1));
+            Mr[k] = (short)F2M12.multiply(qC(k, 1), F2M12.divide(num, s[k]));
+        }
+
+        short[] Fr = F2M12Polynomial.multiply(Mr, n, S, n);
+        short[] co = new short[n];
+        for (int j = 0; j < n; j ++) co[j] = Fr[n-1-j];
+        return co;
+    }
+
+    /**
+     * Returns the coefficient of x^(n-1) in the F interpolating values (see interpolate),
+     * which is non-zero exactly when deg F = n-1. Takes O(n) time.
+     */
+    public int leadingCoefficient(short[] values) {
+        int n = values.length;
+        if (n > order) throw new IllegalArgumentException(
+            "Cannot interpolate "+n+" points: q only has "+order+" distinct powers"
+        );
+
+        // each M(x)/(x - q^i) is monic of degree n-1
+        int lead = 0;
+        for (short c: lagrange(values, qFactorials(n))) lead ^= c;
+        return lead;
+    }
+
+    // s[k] = (1 + q)(1 + q^2)...(1 + q^k), non-zero for k < order
+    private short[] qFactorials(int n) {
+        short[] s = new short[n];
+        if (n == 0) return s;
+        s[0] = 1;
+        for (int k = 1; k < n; k ++) {
+            s[k] = (short)F2M12.multiply(s[k-1], 1 ^ q(k));
+        }
+        return s;
+    }
+
+    // Lagrange: F = sum_i v_i w_i M(x)/(x - q^i), with M = prod_i (x - q^i)
+    // and 1/w_i = prod_{j != i} (q^i - q^j) = q^(C(i,2) + i(n-1-i)) s[i] s[n-1-i]
+    // returns c_i = v_i w_i
+    private short[] lagrange(short[] values, short[] s) {
+        int n = values.length;
+        short[] c = new short[n];
+        for (int i = 0; i < n; i ++) {
+            int wi = F2M12.multiply(s[i], s[n-1-i]);
+            wi = F2M12.multiply(wi, F2M12.multiply(qC(i, 1), q((long)i * (n-1-i))));
+            c[i] = (short)F2M12.divide(values[i], wi);
+        }
+        return c;
+    }
+
+    private int q(long e) {
+        return F2M12.exp((int)Math.floorMod(lq * e, (long)N));
+    }
+
+    private int qC(long k, int sign) {
+        // q^(sign * C(k,2))
+        return q(sign * (k * (k-1) / 2 % N));
+    }
+}
@@ -0,0 +1,233 @@
+package musictheory.algebra;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * A file of irreducible polynomials over GF(2^12), so they need not be searched for again
+ *
+ * Two kinds of entry are kept, both keyed by the generator a of the Galois that uses them:
+ *  - irreducibles of a given degree (see Galois.randomIrreducible)
+ *  - the results of Galois.irreducibleFor, by a digest of the phrase pair
+ *
+ * The file is an append-only log, read through a memory map: opening it only
+ * indexes the entries, and coefficients are decoded when looked up.
+ * Later entries replace earlier ones with the same key.
+ *
+ * Several processes may share one file. Entries are appended under a lock on the file,
+ * and each lookup first indexes whatever the others have appended since.
+ * A partial entry left at the end by a write that never finished is ignored,
+ * and cut off the next time the file is opened or written.
+ *
+ * Format (big endian): the int MAGIC and int VERSION, then any number of entries of
+ *      byte kind, short a, long key, int n, [byte[DIGEST] digest,] short[n] packed coefficients (x^0 first)
+ * Only PAIR entries carry the digest, whose first 8 bytes are the key, so a lookup is
+ * checked against the whole digest and a collision of keys can't return the wrong entry.
+ */
+public class IrreducibleCatalog implements Closeable {
+    private static final int MAGIC = 0x4d544943;    // "MTIC"
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;            // bytes
+    private static final int ENTRY_HEADER = 15;     // bytes before the digest or coefficients of an entry
+    /** the length of the digests which identify phrase pairs, in bytes */
+    public static final int DIGEST = 32;
+
+    private static final byte DEGREE = 0;
+    private static final byte PAIR = 1;
+
+    private final FileChannel channel;
+    private MappedByteBuffer map;       // covers the file as of the last read
+    private final HashMap<Key, Long> index = new HashMap<>();   // offset of each entry
+    private long indexed = HEADER;      // the end of the last entry indexed
+
+    /**
+     * Open the catalog in file, creating it if necessary
+     */
+    public IrreducibleCatalog(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+        try {
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER);
+                    header.putInt(MAGIC).putInt(VERSION).flip();
+                    while (header.hasRemaining()) channel.write(header, HEADER - header.remaining());
+                }
+                remap();
+
+                if (map.limit() < HEADER || map.getInt(0) != MAGIC)
+                    throw new IOException("Not an irreducible catalog: "+file);
+                if (map.getInt(4) != VERSION)
+                    throw new IOException("Unsupported catalog version "+map.getInt(4)+": "+file);
+
+                refresh();
+                trim();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void remap() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) throw new IOException("Catalog is too large to map");
+        map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    // indexes the entries appended since the last call, by this process or another,
+    //      stopping before an entry that is only partly written
+    private void refresh() throws IOException {
+        if (channel.size() == indexed) return;
+        remap();
+
+        long pos = indexed;
+        while (pos + ENTRY_HEADER <= map.limit()) {
+            int p = (int)pos;
+            Key key = new Key(map.get(p), map.getShort(p+1), map.getLong(p+3));
+            int n = map.getInt(p+11);
+            long end = pos + ENTRY_HEADER + (key.kind == PAIR ? DIGEST : 0) + 2L*n;
+            if (end > map.limit()) break;
+            index.put(key, pos);
+            pos = end;
+        }
+        indexed = pos;
+    }
+
+    // cuts off a partial entry at the end of the file. Only under the lock,
+    //      when no other process can be writing it, so it was left by a crash.
+    private void trim() throws IOException {
+        if (channel.size() == indexed) return;
+        channel.truncate(indexed);
+        remap();
+    }
+
+    /**
+     * The catalogued irreducible of degree t for generator a, or null if there is none
+     */
+    public synchronized F2M12Polynomial getIrreducible(F2M12 a, int t) throws IOException {
+        refresh();
+        return get(new Key(DEGREE, (short)a.value(), t));
+    }
+
+    /**
+     * Record F as the irreducible of its degree for generator a
+     */
+    public synchronized void putIrreducible(F2M12 a, F2M12Polynomial F) throws IOException {
+        put(new Key(DEGREE, (short)a.value(), F.getDegree()), F);
+    }
+
+    /**
+     * The catalogued irreducibleFor result for generator a and the phrase pair with the given digest, or null if there is none
+     */
+    public synchronized F2M12Polynomial getIrreducibleFor(F2M12 a, byte[] digest) throws IOException {
+        Key key = new Key(PAIR, (short)a.value(), key(digest));
+        refresh();
+        Long offset = index.get(key);
+        if (offset == null) return null;
+
+        for (int i = 0; i < DIGEST; i ++) {
+            if (map.get((int)(offset + ENTRY_HEADER + i)) != digest[i]) return null;   // a different pair
+        }
+        return get(key);
+    }
+
+    /**
+     * Record X as the irreducibleFor result for generator a and the phrase pair with the given digest
+     */
+    public synchronized void putIrreducibleFor(F2M12 a, byte[] digest, F2M12Polynomial X) throws IOException {
+        put(new Key(PAIR, (short)a.value(), key(digest)), digest, X);
+    }
+
+    private static long key(byte[] digest) {
+        if (digest.length != DIGEST) throw new IllegalArgumentException("Digest must be "+DIGEST+" bytes, not "+digest.length);
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    /**
+     * Number of distinct keys in the catalog, as of the last lookup or record
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized void close() throws IOException {
+        channel.close();
+        map = null;
+    }
+
+    private F2M12Polynomial get(Key key) throws IOException {
+        Long offset = index.get(key);
+        if (offset == null) return null;
+
+        int n = map.getInt((int)(offset + 11));
+        long start = offset + ENTRY_HEADER + (key.kind == PAIR ? DIGEST : 0);
+        short[] co = new short[n];
+        for (int i = 0; i < n; i ++) {
+            co[i] = (short)(map.getShort((int)(start + 2*i)) & 0xfff);
+        }
+        return new F2M12Polynomial(co);
+    }
+
+    private void put(Key key, F2M12Polynomial F) throws IOException {
+        put(key, new byte[0], F);
+    }
+
+    private void put(Key key, byte[] digest, F2M12Polynomial F) throws IOException {
+        short[] co = F.coefficients();
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER + digest.length + 2*co.length);
+        entry.put(key.kind).putShort(key.a).putLong(key.key).putInt(co.length);
+        entry.put(digest);
+        for (short c: co) entry.putShort(c);
+        entry.flip();
+
+        // after every entry, including any another process appended
+        FileLock lock = channel.lock();
+        try {
+            refresh();
+            trim();
+            long pos = indexed;
+            while (entry.hasRemaining()) pos += channel.write(entry, pos);
+            channel.force(false);
+
+            index.put(key, indexed);
+            indexed = pos;
+            remap();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private static final class Key {
+        final byte kind;
+        final short a;
+        final long key;
+
+        Key(byte kind, short a, long key) {
+            this.kind = kind;
+            this.a = a;
+            this.key = key;
+        }
+
+        public boolean equals(Object o) {
+            if (! (o instanceof Key)) return false;
+            Key other = (Key)o;
+            return kind == other.kind && a == other.a && key == other.key;
+        }
+
+        public int hashCode() {
+            return 31*(31*kind + a) + Long.hashCode(key);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package musictheory.algebra;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Searches for a random monic irreducible polynomial over GF(2^12) of a given degree,
+ * with several independent candidate streams running on a fork-join pool.
+ *
+ * Each worker draws candidates from its own generator, split from one seed,
+ * so a search is reproducible up to which worker finishes first. The first
+ * irreducible found is returned, and the other workers stop at their next step.
+ *
+ * Statistics may be read from any thread, during or after the search.
+ */
+public class IrreducibleSearch {
+    /** degree of the polynomials searched for */
+    public final int t;
+    /** number of candidate streams run in parallel */
+    public final int workers;
+    private final long seed;
+
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicReference<F2M12Polynomial> found = new AtomicReference<>();
+    private volatile boolean cancelled;
+    private volatile long start;    // System.nanoTime() at start, or 0 if never started
+    private volatile long end;      // System.nanoTime() at end, or 0 if still running
+
+    /**
+     * Search for degree t on all available processors, with a time-based seed
+     */
+    public IrreducibleSearch(int t) {
+        this(t, Runtime.getRuntime().availableProcessors(), System.nanoTime());
+    }
+
+    /**
+     * Search for degree t with the given number of workers and seed
+     */
+    public IrreducibleSearch(int t, int workers, long seed) {
+        if (t < 1) throw new IllegalArgumentException("Degree must be positive");
+        if (workers < 1) throw new IllegalArgumentException("Need at least one worker");
+        this.t = t;
+        this.workers = workers;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the search, blocking until an irreducible polynomial is found.
+     * Returns null if the search was cancelled first.
+     * A search may only be run once.
+     */
+    public F2M12Polynomial find() {
+        synchronized (this) {
+            if (start != 0) throw new IllegalStateException("Search has already been run");
+            start = System.nanoTime();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            SplittableRandom root = new SplittableRandom(seed);
+            ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i ++) {
+                SplittableRandom rng = root.split();
+                tasks.add(pool.submit(() -> search(rng)));
+            }
+            for (ForkJoinTask<?> task: tasks) task.join();
+        } finally {
+            pool.shutdownNow();
+            end = System.nanoTime();
+        }
+        return found.get();
+    }
+
+    /**
+     * Asks all workers to stop at their next step. find() then returns null,
+     * unless a polynomial had already been found.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void search(SplittableRandom rng) {
+        while (! stopped()) {
+            F2M12Polynomial F = randomPolynomial(rng);
+            attempts.incrementAndGet();
+            // checked inside the test too, as one candidate can take a while at high degree
+            if (Galois.isirreducible(F, this::stopped)) {
+                found.compareAndSet(null, F);
+                return;
+            }
+        }
+    }
+
+    private boolean stopped() {
+        return cancelled || found.get() != null;
+    }
+
+    /**
+     * Returns a random monic polynomial over GF(2^12) of degree t
+     */
+    private F2M12Polynomial randomPolynomial(SplittableRandom rng) {
+        short[] co = new short[t+1];
+        for (int i = 0; i < t; i ++) {
+            co[i] = (short)rng.nextInt(4096);
+        }
+        co[t] = 1;
+        return new F2M12Polynomial(co);
+    }
+
+
+
+
+
+    /*
+     *  STATISTICS
+     */
+
+    /**
+     * Number of candidates tested so far, over all workers
+     */
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    /**
+     * Wall-clock time spent searching so far, in seconds
+     */
+    public double getElapsed() {
+        long start = this.start;
+        if (start == 0) return 0;
+        long end = this.end;
+        if (end == 0) end = System.nanoTime();
+        return (end - start) / 1e9;
+    }
+
+    /**
+     * Candidates tested per second of wall-clock time, over all workers
+     */
+    public double getThroughput() {
+        double elapsed = getElapsed();
+        if (elapsed == 0) return 0;
+        return getAttempts() / elapsed;
+    }
+
+    /**
+     * True once the search has found a polynomial
+     */
+    public boolean isFound() {
+        return found.get() != null;
+    }
+}
@@ -1,11 +1,10 @@
 package musictheory.algebra;
 
 import java.util.ArrayList;
-
-import org.jlinalg.LinSysSolver;
-import org.jlinalg.Matrix;
-import org.jlinalg.Vector;
-import org.jlinalg.doublewrapper.DoubleWrapper;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 
 import musictheory.music.Note;
 import musictheory.music.Chord;
@@ -14,7 +13,8 @@ import musictheory.music.Phrase;
 /**
  * Algebra implementing the Linear Algebra described in report.pdf
  *
- * This implementation is heavily dependent on JLinAlg (jlinalg.sourceforge.net)
+ * Phrases are 12xN PitchMatrix objects, one column per chord.
+ * The inverse comes from a PitchSVD of the 12x12 Gram matrix.
  */
 public class Linear implements Algebra {
     private static final int default_o = 4; // default octave
@@ -22,21 +22,21 @@ public class Linear implements Algebra {
     private static final int default_pmax = 200;
     private static final float default_peps = (float).0001;
 
-    private DoubleWrapper eps;
+    private double eps;
     private int pmax;
-    private DoubleWrapper peps;
+    private double peps;
 
     /**
      * Define all numerical parameters
      * @param eps - ignore any note with amplitude (relative dynamic) less than eps
-     * @param pmax - eigenvector power iteration will iterate up to pmax times before giving up (relevant for ~P only)
-     * @param peps - ignore any eigenvalue less than peps (relevant for ~P only)
+     * @param pmax - the singular value decomposition will sweep up to pmax times before giving up (relevant for ~P only)
+     * @param peps - ignore any eigenvalue of X X^T (squared singular value) less than peps (relevant for ~P only)
      */
     public Linear(float eps, int pmax, float peps) {
         super();
-        this.eps = new DoubleWrapper(eps);
+        this.eps = eps;
         this.pmax = pmax;
-        this.peps = new DoubleWrapper(peps);
+        this.peps = peps;
     }
 
     /**
@@ -59,17 +59,41 @@ public class Linear implements Algebra {
 
         int cpb = Phrase.lcm_cpb(Ps);
 
-        Matrix<DoubleWrapper> M = asMatrix(Ps[0].expand(cpb));
-        for (int i = 1; i < Ps.length; i ++) {
-            M.addReplace(asMatrix(Ps[i].expand(cpb)));
+        // between the points where some phrase changes chord, every column of
+        //      the expanded sum is the same, so each stretch is summed only once
+        Runs[] R = new Runs[Ps.length];
+        for (int p = 0; p < Ps.length; p ++) R[p] = new Runs(Ps[p], cpb);
+        int N = sameLength(R);
+
+        ArrayList<Chord> chords = new ArrayList<>();
+        ArrayList<Integer> starts = new ArrayList<>();
+        int[] at = new int[R.length];   // the current run of each phrase
+        double[] v = new double[PitchMatrix.ROWS];
+        for (int t = 0; t < N; ) {
+            int end = N;
+            Arrays.fill(v, 0);
+            for (int p = 0; p < R.length; p ++) {
+                end = Math.min(end, R[p].ends[at[p]]);
+                double[] x = R[p].vector(at[p]);
+                for (int i = 0; i < v.length; i ++) v[i] += x[i];
+            }
+
+            Chord C = asChord(v, Ps[0].key);
+            if (chords.isEmpty() || ! C.equals(chords.get(chords.size()-1))) {
+                chords.add(C);
+                starts.add(t);
+            }
+
+            for (int p = 0; p < R.length; p ++) if (R[p].ends[at[p]] == end) at[p] ++;
+            t = end;
         }
 
-        return asPhrase(M, Ps[0].key, Ps[0].bpm, cpb);
+        return asPhrase(chords, starts, N, Ps[0].key, Ps[0].bpm, cpb);
     }
 
     public Phrase magnify(float A, Phrase P) {
-        Matrix<DoubleWrapper> M = asMatrix(P);
-        M.multiplyReplace(new DoubleWrapper(A));
+        PitchMatrix M = asMatrix(P);
+        M.multiplyReplace(A);
         return asPhrase(M, P.key, P.bpm, P.cpb);
     }
 
@@ -83,260 +107,290 @@ public class Linear implements Algebra {
 
         int cpb = Phrase.lcm_cpb(P1, P2);
 
-        Matrix<DoubleWrapper> M = asMatrix(P1.expand(cpb));
-        M = M.multiply(asMatrix(P2.expand(cpb)).transpose());
+        // X Y^T sums the outer products of matching columns, so a stretch
+        //      where neither phrase changes chord counts once, weighted by its length
+        Runs X = new Runs(P1, cpb), Y = new Runs(P2, cpb);
+        int N = sameLength(X, Y);
+
+        // and real phrases repeat a few chords: gather, for each distinct column x of X,
+        //      the weighted sum z of the columns of Y it meets, so X Y^T = sum x z^T
+        double[][] z = new double[X.columns.vectors.size()][PitchMatrix.ROWS];
+        int a = 0, b = 0;
+        for (int t = 0; t < N; ) {
+            int end = Math.min(X.ends[a], Y.ends[b]);
+            double[] zc = z[X.ids[a]], y = Y.vector(b);
+            for (int i = 0; i < zc.length; i ++) zc[i] += (end - t) * y[i];
+            if (X.ends[a] == end) a ++;
+            if (Y.ends[b] == end) b ++;
+            t = end;
+        }
+
+        PitchMatrix M = new PitchMatrix(PitchMatrix.ROWS);
+        for (int c = 0; c < z.length; c ++) M.addOuter(X.columns.vectors.get(c), z[c], 1);
 
         return asPhrase(M, P1.key, P1.bpm, cpb);
     }
 
     public Phrase inverse(Phrase P) {
-        Matrix<DoubleWrapper> X = asMatrix(P);
-        Matrix<DoubleWrapper> Xt = X.transpose();
-        Matrix<DoubleWrapper> XXt = X.multiply(Xt);
-        Matrix<DoubleWrapper> XtX = Xt.multiply(X);
-
-        Matrix<DoubleWrapper> L = eigenMatrix(XXt);
-        Matrix<DoubleWrapper> D = deltaMatrix(XXt, L);
-        Matrix<DoubleWrapper> R = eigenMatrix(XtX);
-
-        // each singular vector pair (l, r) is found independently, so
-        //      the sign may be flipped from the correct decomposition
-        // this is equivalent to having a negative singular value,
-        //      so we'll correct by selecting the most accurate D
-        //      from the combinations of negating each one
-        int best_i = -1;
-        double best_diff = Double.MAX_VALUE;
-        for (int i = 0; i < Math.pow(2,D.getRows()); i ++) {
-            Matrix<DoubleWrapper> SVD =
-                    L.multiply(D_pattern(D, i)).multiply(R.transpose());
-            double diff = diff(X, SVD);
-
-            if (diff < best_diff) {
-                best_i = i;
-                best_diff = diff;
-            }
-        }
-        // lock in with the ideal D
-        D = D_pattern(D, best_i);
-
-        Matrix<DoubleWrapper> It = L.multiply(D.inverse()).multiply(R.transpose());
-
-        return asPhrase(It, P.key, P.bpm, P.cpb);
+        // X = U S V^T, so the transposed pseudo-inverse is
+        //      U S^-1 V^T = U S^-2 U^T X = (X X^T)^+ X
+        // X X^T is 12x12 whatever the length, so X itself is never built:
+        //      it sums up the distinct columns, weighted by how often they appear,
+        //      and each distinct column is mapped once, then scattered back
+        Runs R = new Runs(P, P.cpb);
+        PitchMatrix G = new PitchMatrix(PitchMatrix.ROWS);
+        R.addGram(G, 1);
+        PitchMatrix Gi = PitchSVD.ofGram(G, pmax, peps).gramInverse();
+
+        return map(Gi, R, P);
     }
 
+    // maps each chord of P, read as R, through Gi = (X X^T)^+
+    private Phrase map(PitchMatrix Gi, Runs R, Phrase P) {
+        double[] y = new double[PitchMatrix.ROWS];
+        Chord[] mapped = new Chord[R.columns.vectors.size()];
+        for (int c = 0; c < mapped.length; c ++) {
+            Gi.multiply(R.columns.vectors.get(c), y);
+            mapped[c] = asChord(y, P.key);
+        }
 
-    private Matrix<DoubleWrapper> clean(Matrix<DoubleWrapper> M) {
-        Matrix<DoubleWrapper> X = M.copy();
-        for (int i = 0; i < M.getRows(); i ++) {
-            for (int j = 0; j < M.getCols(); j ++) {
-                double v = M.get(i+1,j+1).getValue();
-                v = Math.round(v*10)/10.0;
-                X.set(i+1,j+1, DoubleWrapper.FACTORY.get(v));
-            }
+        // R may be at a multiple of P's chords/beat
+        int r = R.length / Math.max(P.length, 1);
+        Chord[] chords = new Chord[P.length];
+        for (int i = 0; i < R.ids.length; i ++) {
+            Arrays.fill(chords, i == 0 ? 0 : R.ends[i-1]/r, R.ends[i]/r, mapped[R.ids[i]]);
         }
-        return X;
+
+        return new Phrase(chords, P.key, P.bpm, P.cpb).compress();
     }
 
-    private boolean equal(Matrix<DoubleWrapper> M1, Matrix<DoubleWrapper> M2) {
-        Matrix<DoubleWrapper> D = M1.subtract(M2);
-        D = D.arrayMultiply(D);
-        D = D.gt(eps);
+    /**
+     * Starts an empty Incremental inverse, for phrases of the given key, tempo, and chords/beat
+     */
+    public Incremental incremental(int key, int bpm, int cpb) {
+        return new Incremental(key, bpm, cpb);
+    }
 
-        Matrix<DoubleWrapper> Z = new Matrix<>(
-            D.getRows(), D.getCols(), DoubleWrapper.FACTORY
-        );
-        Z.setAll(DoubleWrapper.FACTORY.zero());
+    /**
+     * The inverse of a phrase which changes by appending (and removing) a few chords at a time
+     *
+     * ~P depends on the whole of P only through its 12x12 Gram matrix X X^T (see inverse),
+     * so that is all this keeps, along with its decomposition. Appending or removing k chords
+     * is a rank-k update of the Gram matrix, and the decomposition is refreshed from the last one.
+     * Only the chords asked about are ever mapped, so history is never reprocessed.
+     */
+    public class Incremental {
+        /** the key, tempo, and chords/beat of the phrase being inverted */
+        public final int key, bpm, cpb;
+
+        private final PitchMatrix G = new PitchMatrix(PitchMatrix.ROWS);
+        private PitchSVD svd;       // of G as it was last needed
+        private PitchMatrix Gi;     // (X X^T)^+, or null if G has changed since
+        private int length;         // chords at cpb
+
+        private Incremental(int key, int bpm, int cpb) {
+            this.key = key;
+            this.bpm = bpm;
+            this.cpb = cpb;
+        }
 
-        return D.equals(Z);
-    }
+        /**
+         * The number of chords (at cpb chords/beat) in the phrase so far
+         */
+        public int length() {
+            return length;
+        }
 
-    private Matrix<DoubleWrapper> D_pattern(Matrix<DoubleWrapper> D, int k) {
-        boolean[] repr = binary(k, D.getRows());
+        /**
+         * Appends the chords of P to the phrase, returning their inverse in the phrase as it now is.
+         * P's chords/beat must divide cpb.
+         */
+        public Phrase append(Phrase P) {
+            Runs R = runs(P);
+            R.addGram(G, 1);
+            length += R.length;
+            Gi = null;
+            return map(gramInverse(), R, P);
+        }
 
-        Matrix<DoubleWrapper> M = D.copy();
-        for (int i = 0; i < repr.length; i ++) {
-            if (repr[i]) {
-                DoubleWrapper d = M.get(i+1, i+1);
-                M.set(i+1,i+1, d.multiply(DoubleWrapper.FACTORY.m_one()));
-            }
+        /**
+         * Removes chords appended before (say, the oldest bar) from the phrase.
+         * P's chords/beat must divide cpb.
+         */
+        public void remove(Phrase P) {
+            Runs R = runs(P);
+            if (R.length > length) throw new IllegalArgumentException(
+                "Cannot remove "+R.length+" chords from a phrase of "+length
+            );
+            R.addGram(G, -1);
+            length -= R.length;
+            Gi = null;
         }
 
-        return M;
-    }
+        /**
+         * Returns the inverse of the chords of P (usually part of the phrase) in the phrase as it now is
+         */
+        public Phrase inverse(Phrase P) {
+            return map(gramInverse(), runs(P), P);
+        }
 
-    private boolean[] binary(int i, int n) {
-        boolean[] repr = new boolean[n];
-        for (int j = repr.length-1; j >= 0; j --) {
-            repr[j] = (i & 1) > 0;  // check if i is odd
-            i /= 2;
+        private Runs runs(Phrase P) {
+            if (P.key != key)
+                throw new IllegalArgumentException("Cannot mix phrases of different key");
+            if (P.bpm != bpm)
+                throw new IllegalArgumentException("Cannot mix phrases of different tempo");
+            if (cpb % P.cpb != 0)
+                throw new IllegalArgumentException("Chords/beat "+P.cpb+" does not divide cpb="+cpb);
+            return new Runs(P, cpb);
         }
-        return repr;
-    }
 
-    private double diff(Matrix<DoubleWrapper> M1, Matrix<DoubleWrapper> M2) {
-        Matrix<DoubleWrapper> M = M1.subtract(M2);
-        double sum = 0;
-        for (int i = 0; i < M.getRows(); i ++) {
-            for (int j = 0; j < M.getCols(); j ++) {
-                sum += Math.abs(M.get(i+1,j+1).getValue());
+        private PitchMatrix gramInverse() {
+            if (Gi == null) {
+                svd = PitchSVD.ofGram(G, pmax, peps, svd);
+                Gi = svd.gramInverse();
             }
+            return Gi;
         }
-        return sum;
     }
 
 
 
+    // a phrase as maximal runs of equal chords, measured at a multiple cpb of its chords/beat
+    //      (so without expanding it), with each distinct chord made a column only once
+    private class Runs {
+        final Distinct columns = new Distinct();    // weighted by the total length of their runs
+        final int[] ids;            // the distinct column of each run
+        final int[] ends;           // where each run stops
+        final int length;           // the length of the expanded phrase
 
+        Runs(Phrase P, int cpb) {
+            int r = cpb / P.cpb;
+            int n = 0;
+            for (int j = 0; j < P.length; j ++) {
+                if (j == 0 || ! P.C(j).equals(P.C(j-1))) n ++;
+            }
 
-
-
-    private Vector<DoubleWrapper> powerIteration(Matrix<DoubleWrapper> M, int i, int r) {
-        int n = M.getRows();
-        Vector<DoubleWrapper> x0 = new Vector<>(n, DoubleWrapper.FACTORY);
-        // uniform initialization
-        x0.setAll(DoubleWrapper.FACTORY.one());
-        x0.divideReplace(x0.L2Norm());
-
-        return powerIteration(M, x0, i,r);
-    }
-
-    private Vector<DoubleWrapper> powerIteration(
-        Matrix<DoubleWrapper> M, Vector<DoubleWrapper> x0, int i, int rank
-    ) {
-        Vector<DoubleWrapper> x = x0;
-        Vector<DoubleWrapper> xp;
-
-        int cnt = 0;
-        DoubleWrapper dist = peps;
-        while (dist.ge(peps)) {
-            xp = M.multiply(x);             // propagate
-            xp.divideReplace(xp.L2Norm());  // normalize
-            dist = xp.distance(x);          // check error
-
-            x = xp;                         // iterate
-            if (++cnt > pmax) break;        // insure against orthogonal x0
+            this.ids = new int[n];
+            this.ends = new int[n];
+            this.length = r * P.length;
+
+            // repeated chords are usually the same object, which is cheaper to look up than the column
+            IdentityHashMap<Chord,Integer> seen = new IdentityHashMap<>();
+            int i = -1;
+            for (int j = 0; j < P.length; j ++) {
+                Chord C = P.C(j);
+                if (j == 0 || ! C.equals(P.C(j-1))) {
+                    Integer id = seen.get(C);
+                    if (id == null) {
+                        double[] x = new double[PitchMatrix.ROWS];
+                        asVector(C, P.key, x);
+                        id = columns.add(x, 0);
+                        seen.put(C, id);
+                    }
+                    ids[++i] = id;
+                }
+                ends[i] = r * (j+1);
+                columns.weights[ids[i]] += r;
+            }
         }
 
-        DoubleWrapper eig = eigenvalue(M,x);
-
-        // check if we failed to converge, or converged on the wrong vector
-        if (cnt > pmax || eig.lt(eps)) {
-            // throw new RuntimeException("Increase your pmax or decrease your peps!" +"\n"+
-            //     "Convergence "+dist+" after "+pmax+" iterations.");
-            System.err.println("Passed "+pmax+" iterations:");
-            System.err.println("Singular vector "+i+"/"+rank);
-//            System.err.println("\tx0:\t"+x0);
-            System.err.println("\tD:\t"+dist);
-            System.err.println("\tl:\t"+eig);
-            System.err.println("\tRestarting with new x0:");
-            Vector<DoubleWrapper> r = randomOrthonormal(x0);
-//            System.out.println(r);
-            return powerIteration(M, r, i,rank);
+        double[] vector(int i) {
+            return columns.vectors.get(ids[i]);
         }
-        // System.out.println("Power iteration took "+cnt+" iterations.");
-
-        // System.out.println("Iteration successful: "+eig);
-        return x;
-    }
 
-    private DoubleWrapper eigenvalue(Matrix<DoubleWrapper> M, Vector<DoubleWrapper> E) {
-        return E.multiply( M.multiply(E) );
+        // adds sign * X X^T to G
+        void addGram(PitchMatrix G, int sign) {
+            for (int c = 0; c < columns.vectors.size(); c ++) {
+                G.addOuter(columns.vectors.get(c), sign * columns.weights[c]);
+            }
+        }
     }
 
-    private Matrix<DoubleWrapper> eigenMatrix(Matrix<DoubleWrapper> M) {
-        // Vector<DoubleWrapper> V = new Vector<>(M.eig(), DoubleWrapper.FACTORY);
-        // // rank is # of eigenvalues greater than "zero"
-        // int r = (int)(V.gt(eps).sum().getValue());
-        int r = M.rank();
-
-        Matrix<DoubleWrapper> X = new Matrix<>(M.getRows(), r, DoubleWrapper.FACTORY);
-
-        for (int i = 0; i < r; i ++) {
-            Vector<DoubleWrapper> E = powerIteration(M, i,r);
-            DoubleWrapper eig = eigenvalue(M,E);
-
-            X.setCol(i+1, E);
-            M = M.subtract( E.transposeAndMultiply(E).multiply(eig) );
+    // the distinct columns of a sequence, each with the total weight it was added with
+    private static class Distinct {
+        final HashMap<Column,Integer> index = new HashMap<>();
+        final ArrayList<double[]> vectors = new ArrayList<>();
+        int[] weights = new int[8];
+
+        // returns the index of x among the distinct columns
+        int add(double[] x, int w) {
+            Column key = new Column(x);
+            Integer i = index.get(key);
+            if (i == null) {
+                i = vectors.size();
+                index.put(key, i);
+                vectors.add(x);
+                if (i == weights.length) weights = Arrays.copyOf(weights, 2*i);
+            }
+            weights[i] += w;
+            return i;
         }
-
-        return X;
     }
 
-    private Matrix<DoubleWrapper> deltaMatrix(
-        Matrix<DoubleWrapper> M, Matrix<DoubleWrapper> E
-    ) {
-        int r = E.getCols();
-
-        Double[][] zeros = new Double[r][r];
-        for (int i = 0; i < r; i ++) for (int j = 0; j < r; j ++) zeros[i][j] = 0.0;
-        Matrix<DoubleWrapper> D = new Matrix<>(zeros, DoubleWrapper.FACTORY);
+    // a column by its entries, as a hash key (the array must not change afterwards)
+    private static class Column {
+        final double[] x;
+        final int hash;
+
+        Column(double[] x) {
+            this.x = x;
+            // amplitudes are mostly short binary fractions, whose low bits are all zero,
+            //      so each entry is mixed down before combining (Arrays.hashCode collides badly)
+            long h = 0;
+            for (double v: x) {
+                long z = Double.doubleToLongBits(v);
+                z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+                h = 31*h + (z ^ (z >>> 33));
+            }
+            this.hash = (int)(h ^ (h >>> 32));
+        }
 
-        for (int i = 0; i < r; i ++) {
-            DoubleWrapper eig = eigenvalue(M, E.getCol(i+1));
-            D.set(i+1, i+1, eig.sqrt());
+        public boolean equals(Object o) {
+            return o instanceof Column && Arrays.equals(x, ((Column)o).x);
         }
 
-        return D;
+        public int hashCode() {
+            return hash;
+        }
     }
 
-    private Vector<DoubleWrapper> randomOrthonormal(Vector<DoubleWrapper> V) {
-        int n = V.length();
-        Vector<DoubleWrapper> R = new Vector<>(n, DoubleWrapper.FACTORY);
-        for (int i = 0; i < n-1; i ++) R.set(i+1, DoubleWrapper.FACTORY.randomValue());
-        R.set(n, DoubleWrapper.FACTORY.zero());
-
-        R.set(n, R.multiply(V).divide(V.getEntry(n)).negate() );
-        // technically we should iterate through until we find a non-zero element of V
-
-        R.divideReplace(R.L2Norm()); // normalize
-
-        return R;
+    private int sameLength(Runs... R) {
+        for (Runs r: R) if (r.length != R[0].length) throw new IllegalArgumentException(
+            "Phrases have different lengths at the same chords/beat: "+R[0].length+" and "+r.length
+        );
+        return R[0].length;
     }
 
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-    private Vector<DoubleWrapper> asVector(Chord C, int k) {
-        Double[] amps = new Double[12];
-        for (int i = 0; i < amps.length; i ++) amps[i] = 0.0;
-
+    private void asColumn(Chord C, int k, PitchMatrix M, int j) {
         for (int i = 0; i < C.length; i ++) {
-            amps[Note.f(C.N(i).p, k)] += C.A(i);
+            M.add(Note.f(C.N(i).p, k), j, C.A(i));
         }
-
-        return new Vector<DoubleWrapper>(amps, DoubleWrapper.FACTORY);
     }
 
-    private Chord asChord(Vector<DoubleWrapper> V, int k) {
-        // find weight of vector: # of elements greater than "zero"
-        int wt = (int)(V.gt(eps).sum().getValue());
+    private void asVector(Chord C, int k, double[] x) {
+        Arrays.fill(x, 0);
+        for (int i = 0; i < C.length; i ++) {
+            x[Note.f(C.N(i).p, k)] += C.A(i);
+        }
+    }
 
-        // also account for valid negative numbers!
-        Vector<DoubleWrapper> mV = V.multiply(DoubleWrapper.FACTORY.m_one());
-        wt += (int)(mV.gt(eps).sum().getValue());
+    private Chord asChord(double[] v, int k) {
+        // find weight of vector: # of elements whose magnitude is greater than "zero"
+        //      (also account for valid negative numbers!)
+        int wt = 0;
+        for (int i = 0; i < PitchMatrix.ROWS; i ++) {
+            if (v[i] > eps || -v[i] > eps) wt ++;
+        }
 
         Note[] notes = new Note[wt];
         float[] amps = new float[wt];
 
-        int j = 0; // track index of notes and amps
-        for (int i = 0; i < V.length(); i ++) {
-            if (V.getEntry(i+1).gt(eps) || mV.getEntry(i+1).gt(eps)) {
-                notes[j] = new Note(default_o, Note.p(i,k));
-                amps[j] = (float)V.getEntry(i+1).getValue();
-                j ++;
+        int n = 0; // track index of notes and amps
+        for (int i = 0; i < PitchMatrix.ROWS; i ++) {
+            if (v[i] > eps || -v[i] > eps) {
+                notes[n] = new Note(default_o, Note.p(i,k));
+                amps[n] = (float)v[i];
+                n ++;
             }
         }
 
@@ -344,25 +398,51 @@ public class Linear implements Algebra {
     }
 
 
-    private Matrix<DoubleWrapper> asMatrix(Phrase P) {
-        Vector<DoubleWrapper>[] chords = new Vector[P.length];
-        for (int i = 0; i < chords.length; i ++) {
-            chords[i] = asVector(P.C(i), P.key);
+    private PitchMatrix asMatrix(Phrase P) {
+        PitchMatrix M = new PitchMatrix(P.length);
+        for (int j = 0; j < P.length; j ++) {
+            asColumn(P.C(j), P.key, M, j);
         }
-
-        Matrix<DoubleWrapper> M = new Matrix<>(chords);
-        return M.transpose();
+        return M;
     }
 
-    private Phrase asPhrase(Matrix<DoubleWrapper> M, int key, int bpm, int cpb) {
-        Chord[] chords = new Chord[M.getCols()];
+    private Phrase asPhrase(PitchMatrix M, int key, int bpm, int cpb) {
+        Chord[] chords = new Chord[M.cols];
 
-        for (int i = 0; i < chords.length; i ++) {
-            chords[i] = asChord(M.getCol(i+1), key);
+        double[] v = new double[PitchMatrix.ROWS];
+        for (int j = 0; j < chords.length; j ++) {
+            M.getCol(j, v);
+            chords[j] = asChord(v, key);
         }
 
         Phrase P = new Phrase(chords, key, bpm, cpb);
         return P.compress();
     }
 
+    // as asPhrase above, for the phrase of length N made of runs of chords, the i-th beginning at starts[i]
+    //      (adjacent runs must have different chords)
+    private Phrase asPhrase(List<Chord> runs, List<Integer> starts, int N, int key, int bpm, int cpb) {
+        if (N == 0) return new Phrase(new Chord[0], key, bpm, cpb);
+
+        // compress() would find the largest r dividing cpb, N, and every run boundary
+        int r = gcd(cpb, N);
+        for (int start: starts) r = gcd(r, start);
+
+        Chord[] chords = new Chord[N / r];
+        for (int i = 0; i < runs.size(); i ++) {
+            int end = i+1 < starts.size() ? starts.get(i+1) : N;
+            Arrays.fill(chords, starts.get(i) / r, end / r, runs.get(i));
+        }
+        return new Phrase(chords, key, bpm, cpb / r);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int c = a % b;
+            a = b;
+            b = c;
+        }
+        return a;
+    }
+
 }
@@ -0,0 +1,126 @@
+package musictheory.algebra;
+
+import java.util.Arrays;
+
+/**
+ * A real 12xN matrix, one column per chord and one row per pitch (see Linear),
+ * stored column-major in a single double[] so each chord is contiguous.
+ *
+ * Indices start at 0, unlike JLinAlg.
+ */
+public class PitchMatrix {
+    /** the number of rows: one for each pitch */
+    public static final int ROWS = 12;
+
+    private final double[] a;   // a[ROWS*j + i] is row i, column j
+    /** the number of columns */
+    public final int cols;
+
+    /**
+     * The zero matrix with the given number of columns
+     */
+    public PitchMatrix(int cols) {
+        this(new double[ROWS*cols], cols);
+    }
+
+    // takes ownership of a
+    private PitchMatrix(double[] a, int cols) {
+        this.a = a;
+        this.cols = cols;
+    }
+
+    public double get(int i, int j) {
+        return a[ROWS*j + i];
+    }
+
+    public void set(int i, int j, double v) {
+        a[ROWS*j + i] = v;
+    }
+
+    /**
+     * Adds v to the entry at row i, column j
+     */
+    public void add(int i, int j, double v) {
+        a[ROWS*j + i] += v;
+    }
+
+    /**
+     * Returns a copy of column j
+     */
+    public double[] getCol(int j) {
+        return Arrays.copyOfRange(a, ROWS*j, ROWS*(j+1));
+    }
+
+    /**
+     * Copies column j into out, which needs at least ROWS entries
+     */
+    public void getCol(int j, double[] out) {
+        System.arraycopy(a, ROWS*j, out, 0, ROWS);
+    }
+
+    public PitchMatrix copy() {
+        return new PitchMatrix(a.clone(), cols);
+    }
+
+    public PitchMatrix add(PitchMatrix M) {
+        PitchMatrix X = copy();
+        X.addReplace(M);
+        return X;
+    }
+
+    public void addReplace(PitchMatrix M) {
+        check(M);
+        for (int k = 0; k < a.length; k ++) a[k] += M.a[k];
+    }
+
+    public PitchMatrix multiply(double c) {
+        PitchMatrix X = copy();
+        X.multiplyReplace(c);
+        return X;
+    }
+
+    public void multiplyReplace(double c) {
+        for (int k = 0; k < a.length; k ++) a[k] *= c;
+    }
+
+    /**
+     * Writes this * x to out, where this is 12x12 (a PitchMatrix of 12 columns)
+     */
+    public void multiply(double[] x, double[] out) {
+        if (cols != ROWS) throw new IllegalArgumentException("Left factor must be 12x12, not 12x"+cols);
+        Arrays.fill(out, 0, ROWS, 0);
+        for (int k = 0; k < ROWS; k ++) {
+            double m = x[k];
+            if (m == 0) continue;
+            int r = ROWS*k;
+            for (int i = 0; i < ROWS; i ++) out[i] += a[r + i] * m;
+        }
+    }
+
+    /**
+     * Adds w * x x^T to this, where this is 12x12 (a PitchMatrix of 12 columns).
+     * Summed over the columns x of some X, this builds the Gram matrix X X^T.
+     */
+    public void addOuter(double[] x, double w) {
+        addOuter(x, x, w);
+    }
+
+    /**
+     * Adds w * x y^T to this, where this is 12x12 (a PitchMatrix of 12 columns)
+     */
+    public void addOuter(double[] x, double[] y, double w) {
+        if (cols != ROWS) throw new IllegalArgumentException("Matrix must be 12x12, not 12x"+cols);
+        for (int k = 0; k < ROWS; k ++) {
+            double m = w * y[k];
+            if (m == 0) continue;
+            int r = ROWS*k;
+            for (int i = 0; i < ROWS; i ++) a[r + i] += x[i] * m;
+        }
+    }
+
+    private void check(PitchMatrix M) {
+        if (M.cols != cols) throw new IllegalArgumentException(
+            "Matrices have different numbers of columns: "+cols+" and "+M.cols
+        );
+    }
+}
@@ -0,0 +1,161 @@
+package musictheory.algebra;
+
+import java.util.Arrays;
+
+/**
+ * Singular value decomposition X = U S V^T of a 12xN PitchMatrix, by Jacobi rotations
+ *
+ * ofGram(X X^T) applies plane rotations to both sides of the 12x12 Gram matrix until it is diagonal,
+ * so the rotations accumulate into U and the square roots of the diagonal are the singular values.
+ * X itself is never needed, and V never needs to be formed: it is X^T U S^-1.
+ *
+ * Every rotation acts on U and on the rows together, so the triplets are consistent by construction.
+ * Signs are fixed by making the largest component of each left singular vector positive.
+ */
+public class PitchSVD {
+    private static final double TOL = 1e-13;    // rows this close to orthogonal are left alone
+
+    private final double[] s;       // singular values, in decreasing order
+    private final double[][] U;     // U[k] is the k-th left singular vector
+    /** the number of singular values whose squares are at least the threshold */
+    public final int rank;
+
+    /**
+     * Decompose any X with X X^T = G, from G alone, by rotating it on both sides.
+     * This squares the condition number, but takes the same time for any N.
+     * @param sweeps - the most sweeps over all pairs of rows before giving up on convergence
+     * @param threshold - eigenvalues of G less than this count as zero
+     */
+    public static PitchSVD ofGram(PitchMatrix G, int sweeps, double threshold) {
+        return ofGram(G, sweeps, threshold, null);
+    }
+
+    /**
+     * As ofGram(G, sweeps, threshold), starting from the left singular vectors of guess.
+     * When G has changed little since guess was made, it is nearly diagonal in that basis,
+     * and a sweep or two finishes the job.
+     */
+    public static PitchSVD ofGram(PitchMatrix G, int sweeps, double threshold, PitchSVD guess) {
+        int n = PitchMatrix.ROWS;
+        if (G.cols != n) throw new IllegalArgumentException("Gram matrix must be 12x12, not 12x"+G.cols);
+        double[][] Q = identity();      // A = Q G Q^T throughout
+        if (guess != null) for (int k = 0; k < n; k ++) Q[k] = guess.U[k].clone();
+
+        double[][] A = new double[n][n];
+        double[] g = new double[n];
+        for (int j = 0; j < n; j ++) {
+            G.getCol(j, g);     // symmetric, so also row j
+            for (int p = 0; p < n; p ++) {
+                // (Q G)[p][j]
+                double d = 0;
+                for (int i = 0; i < n; i ++) d += Q[p][i] * g[i];
+                for (int q = 0; q < n; q ++) A[p][q] += d * Q[q][j];
+            }
+        }
+
+        // each rotation makes rows p and q of Q X orthogonal
+        for (int sweep = 0; sweep < sweeps; sweep ++) {
+            boolean rotated = false;
+            for (int p = 0; p < n-1; p ++) {
+                for (int q = p+1; q < n; q ++) {
+                    double[] cs = rotation(A[p][p], A[q][q], A[p][q]);
+                    if (cs == null) continue;
+
+                    rotate(A, p, q, cs[0], cs[1]);
+                    for (double[] row: A) {
+                        double x = row[p], y = row[q];
+                        row[p] = cs[0]*x - cs[1]*y;
+                        row[q] = cs[1]*x + cs[0]*y;
+                    }
+                    rotate(Q, p, q, cs[0], cs[1]);
+                    rotated = true;
+                }
+            }
+            if (! rotated) break;
+        }
+
+        double[] squares = new double[n];
+        for (int k = 0; k < n; k ++) squares[k] = Math.max(A[k][k], 0);
+        return new PitchSVD(Q, squares, threshold);
+    }
+
+    // the rows of Q X are orthogonal and X = Q^T (Q X), so the left singular vectors are the rows of Q
+    private PitchSVD(double[][] Q, double[] squares, double threshold) {
+        int n = PitchMatrix.ROWS;
+        Integer[] order = new Integer[n];
+        for (int k = 0; k < n; k ++) order[k] = k;
+        Arrays.sort(order, (i, j) -> Double.compare(squares[j], squares[i]));
+
+        this.s = new double[n];
+        this.U = new double[n][];
+        int r = 0;
+        for (int k = 0; k < n; k ++) {
+            s[k] = Math.sqrt(squares[order[k]]);
+            U[k] = Q[order[k]];
+            if (squares[order[k]] >= threshold) r ++;
+
+            int m = 0;
+            for (int i = 1; i < n; i ++) if (Math.abs(U[k][i]) > Math.abs(U[k][m])) m = i;
+            if (U[k][m] < 0) for (int i = 0; i < n; i ++) U[k][i] = -U[k][i];
+        }
+        this.rank = r;
+    }
+
+    // the rotation {c, s} which makes rows p and q orthogonal, given their dot products
+    //      (null if they already are)
+    private static double[] rotation(double alpha, double beta, double gamma) {
+        if (Math.abs(gamma) <= TOL * Math.sqrt(alpha*beta)) return null;
+
+        double zeta = (beta - alpha) / (2*gamma);
+        double t = Math.signum(zeta) / (Math.abs(zeta) + Math.sqrt(1 + zeta*zeta));
+        if (zeta == 0) t = 1;
+        double c = 1 / Math.sqrt(1 + t*t);
+        return new double[]{ c, c*t };
+    }
+
+    // replaces rows p and q of A with c*p - s*q and s*p + c*q
+    private static void rotate(double[][] A, int p, int q, double c, double s) {
+        for (int i = 0; i < A[p].length; i ++) {
+            double x = A[p][i], y = A[q][i];
+            A[p][i] = c*x - s*y;
+            A[q][i] = s*x + c*y;
+        }
+    }
+
+    private static double[][] identity() {
+        double[][] I = new double[PitchMatrix.ROWS][PitchMatrix.ROWS];
+        for (int i = 0; i < I.length; i ++) I[i][i] = 1;
+        return I;
+    }
+
+    /**
+     * The k-th largest singular value
+     */
+    public double getSingularValue(int k) {
+        return s[k];
+    }
+
+    /**
+     * Returns a copy of the k-th left singular vector
+     */
+    public double[] getLeftVector(int k) {
+        return U[k].clone();
+    }
+
+    /**
+     * Returns (X X^T)^+ = U S^-2 U^T, dropping singular values below the threshold,
+     * as a 12x12 PitchMatrix. Multiplying this by X gives (X^+)^T = U S^-1 V^T.
+     */
+    public PitchMatrix gramInverse() {
+        PitchMatrix G = new PitchMatrix(PitchMatrix.ROWS);
+        for (int k = 0; k < rank; k ++) {
+            double w = 1 / (s[k]*s[k]);
+            for (int i = 0; i < PitchMatrix.ROWS; i ++) {
+                for (int j = 0; j < PitchMatrix.ROWS; j ++) {
+                    G.add(i, j, U[k][i] * w * U[k][j]);
+                }
+            }
+        }
+        return G;
+    }
+}
@@ -119,6 +119,19 @@ public class Chord {
         return true;
     }
 
+    /**
+     * Consistent with equals: depends on the notes and relative dynamics, in internal order
+     */
+    public int hashCode() {
+        int h = length;
+        for (int i = 0; i < length; i ++) {
+            h = 31*h + notes[i].n;
+            // 0.0 == -0.0, but their bits differ
+            h = 31*h + (amps[i] == 0 ? 0 : Float.floatToIntBits(amps[i]));
+        }
+        return h;
+    }
+
     /**
      * Returns a new Chord with the relative dynamic 1.0, or 0.0 if it is currently less than eps
      */
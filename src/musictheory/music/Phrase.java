@@ -153,30 +153,16 @@ public class Phrase {
      * @param r - the sample rate, ie the number of samples per second of time
      */
     public double[] phases(float r) {
-        int Npc = (int)(r * spc); // samples / chord
-        int cap = Npc / 100; // which sample in a pulse to start decay
-        // int cap = 35;
-
-        double[] phases = new double[Npc * length];
-        for (int i = 0; i < length; i ++) { // i iterates over chords
-            Chord C = chords[i];
-
-            for (int j = 0; j < Npc; j ++) { // j iterates over samples
-                float t = j / r; // sec
-
-                double phase = 0;
-                for (int k = 0; k < C.length; k ++) { // k iterates over notes
-                    Note N = C.N(k);
-                    phase += C.A(k) * Math.sin(N.w * t);
-                    // linearly modulate start and end of pulse
-                    if (j < cap) phase *= (1.0*j)/cap;
-                    if (Npc-j < cap) phase *= (Npc - 1.0*j)/cap;
-                }
-                phases[Npc*i+j] = phase;
-            }
-        }
+        return Synthesizer.render(this, r);
+    }
 
-        return phases;
+    /**
+     * As phases(r), rendering blocks of chords in parallel
+     * @param r - the sample rate, ie the number of samples per second of time
+     * @param grain - the most chords rendered by one task (see Synthesizer)
+     */
+    public double[] phases(float r, int grain) {
+        return Synthesizer.render(this, r, grain);
     }
 
     /**
@@ -0,0 +1,87 @@
+package musictheory.music;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A bounded store of rendered chords (see Synthesizer), evicting the least recently used
+ *
+ * Chords are keyed by content (see Chord.equals), samples per chord, and sample rate,
+ * so a chord repeated anywhere in a piece is synthesized once. The bound is on the
+ * total number of samples held, so memory stays predictable however large the score.
+ */
+public class RenderCache {
+    /** the cache Synthesizers use unless given another: 4M samples, or 32MB */
+    public static final RenderCache SHARED = new RenderCache(1 << 22);
+
+    /** the most samples this will hold at once */
+    public final long capacity;
+
+    private long size;  // samples
+    private final LinkedHashMap<Key,double[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+    public RenderCache(long capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must be non-negative");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the samples of C rendered Npc to a chord at sample rate r, or null if they aren't held.
+     * The array is shared, and must not be modified.
+     */
+    public synchronized double[] get(Chord C, int Npc, float r) {
+        return blocks.get(new Key(C, Npc, r));
+    }
+
+    /**
+     * Holds samples, the rendering of C with samples.length samples at sample rate r,
+     * evicting the least recently used as needed. The array is kept, not copied.
+     */
+    public synchronized void put(Chord C, float r, double[] samples) {
+        if (samples.length > capacity) return;  // would evict everything, and still not fit
+
+        double[] old = blocks.put(new Key(C, samples.length, r), samples);
+        if (old != null) size -= old.length;
+        size += samples.length;
+
+        Iterator<double[]> it = blocks.values().iterator();
+        while (size > capacity) {
+            size -= it.next().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * The number of samples held
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        blocks.clear();
+        size = 0;
+    }
+
+    private static class Key {
+        final Chord C;  // Chords are immutable
+        final int Npc;
+        final float r;
+
+        Key(Chord C, int Npc, float r) {
+            this.C = C;
+            this.Npc = Npc;
+            this.r = r;
+        }
+
+        public boolean equals(Object o) {
+            if (! (o instanceof Key)) return false;
+            Key other = (Key)o;
+            return Npc == other.Npc && r == other.r && C.equals(other.C);
+        }
+
+        public int hashCode() {
+            return (C.hashCode() * 31 + Npc) * 31 + Float.floatToIntBits(r);
+        }
+    }
+}
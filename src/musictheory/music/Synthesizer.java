@@ -0,0 +1,255 @@
+package musictheory.music;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Renders chords into pressure amplitudes (see Phrase.phases), for one sample rate and chord duration
+ *
+ * Each note is a phasor rotated by w/r every sample, instead of a call to Math.sin,
+ * and re-synchronized with the exact angle every so often so rounding can't accumulate.
+ * Samples are made a BLOCK at a time, from the phasor at the start of the block times a table
+ * of the phasor at each offset into it, so the inner loop has no serial dependence.
+ * Its arrays all share one index, as C2's vectorizer needs, so it compiles to packed
+ * vmulpd/vaddpd.
+ * The attack/decay envelope depends only on the chord length, so it is computed once,
+ * and chords already rendered are copied out of a RenderCache.
+ */
+public class Synthesizer {
+    private static final int RESYNC = 1024;     // samples between exact phasor evaluations
+    private static final int BLOCK = 256;       // samples per vectorized block, dividing RESYNC
+
+    /** the sample rate, ie the number of samples per second of time */
+    public final float r;
+    /** the number of samples in each chord */
+    public final int Npc;
+
+    private final double[] env; // linear attack and decay over the first and last 1% of a chord
+    private final RenderCache cache;    // may be null
+
+    /**
+     * Uses RenderCache.SHARED
+     * @param r - the sample rate, ie the number of samples per second of time
+     * @param spc - the duration of each chord, in seconds
+     */
+    public Synthesizer(float r, float spc) {
+        this(r, spc, RenderCache.SHARED);
+    }
+
+    /**
+     * @param r - the sample rate, ie the number of samples per second of time
+     * @param spc - the duration of each chord, in seconds
+     * @param cache - where to keep rendered chords for reuse, or null to render every chord afresh
+     */
+    public Synthesizer(float r, float spc, RenderCache cache) {
+        this.r = r;
+        this.cache = cache;
+        this.Npc = (int)(r * spc); // samples / chord
+
+        int cap = Npc / 100; // which sample in a pulse to start decay
+        this.env = new double[Npc];
+        for (int j = 0; j < Npc; j ++) {
+            double e = 1;
+            if (j < cap) e *= (1.0*j)/cap;
+            if (Npc-j < cap) e *= (Npc - 1.0*j)/cap;
+            env[j] = e;
+        }
+    }
+
+    /**
+     * Writes the Npc samples of C to out, starting at off
+     */
+    public void render(Chord C, double[] out, int off) {
+        double[] block = cache == null ? null : cache.get(C, Npc, r);
+        if (block != null) {
+            System.arraycopy(block, 0, out, off, Npc);
+            return;
+        }
+
+        synthesize(C, out, off);
+        if (cache != null) cache.put(C, r, Arrays.copyOfRange(out, off, off + Npc));
+    }
+
+    private void synthesize(Chord C, double[] out, int off) {
+        int L = C.length;
+        double[] A = new double[L], theta = new double[L];
+        double[][] re = new double[L][BLOCK], im = new double[L][BLOCK];  // each note's phasor at each offset into a block
+        double[] cb = new double[L], sb = new double[L];    // each note's rotation by a whole block
+        double[] bre = new double[L], bim = new double[L];  // each note's phasor at the start of the block
+        for (int k = 0; k < L; k ++) {
+            A[k] = C.A(k);
+            theta[k] = (double)C.N(k).w / r;    // rad / sample
+
+            double c = Math.cos(theta[k]), s = Math.sin(theta[k]);
+            re[k][0] = 1;
+            for (int l = 1; l < BLOCK; l ++) {
+                re[k][l] = re[k][l-1]*c - im[k][l-1]*s;
+                im[k][l] = re[k][l-1]*s + im[k][l-1]*c;
+            }
+            cb[k] = Math.cos(theta[k] * BLOCK);
+            sb[k] = Math.sin(theta[k] * BLOCK);
+        }
+
+        // every array in the inner loop is indexed by l alone, which is what lets C2 vectorize it
+        double[] acc = new double[BLOCK], eb = new double[BLOCK];
+        for (int j0 = 0; j0 < Npc; j0 += BLOCK) {
+            int m = Math.min(BLOCK, Npc - j0);
+            System.arraycopy(env, j0, eb, 0, m);
+            Arrays.fill(acc, 0);
+
+            // the envelope applies once per note after it is added, so the k-th of L notes
+            //      is scaled by env^(L-k), just as phases() always has
+            for (int k = 0; k < L; k ++) {
+                if (j0 % RESYNC == 0) {
+                    bre[k] = Math.cos(theta[k] * j0);
+                    bim[k] = Math.sin(theta[k] * j0);
+                }
+                // sin(theta*(j0+l)) = Im(block phasor * offset phasor)
+                double a = A[k], br = bre[k], bi = bim[k];
+                double[] rk = re[k], ik = im[k];
+                for (int l = 0; l < m; l ++) {
+                    acc[l] = (acc[l] + a * (bi*rk[l] + br*ik[l])) * eb[l];
+                }
+                double t = br*cb[k] - bi*sb[k];
+                bim[k] = br*sb[k] + bi*cb[k];
+                bre[k] = t;
+            }
+            System.arraycopy(acc, 0, out, off + j0, m);
+        }
+    }
+
+    /**
+     * Returns the samples of every chord of P in order, at this sample rate and P's chord duration
+     */
+    public static double[] render(Phrase P, float r) {
+        Synthesizer S = new Synthesizer(r, P.spc);
+        double[] phases = new double[S.Npc * P.length];
+        S.render(P, phases, 0, P.length);
+        return phases;
+    }
+
+    /**
+     * As render(P, r), splitting the chords across the common ForkJoinPool
+     * @param grain - the most chords rendered by one task
+     */
+    public static double[] render(Phrase P, float r, int grain) {
+        if (grain < 1) throw new IllegalArgumentException("Grain must be positive");
+        Synthesizer S = new Synthesizer(r, P.spc);
+        double[] phases = new double[S.Npc * P.length];
+        // each chord writes only its own slice, so the tasks never overlap
+        ForkJoinPool.commonPool().invoke(S.new Render(P, phases, 0, P.length, grain));
+        return phases;
+    }
+
+    /**
+     * Adds the samples of every chord of P, at sample rate r and P's chord duration, into out,
+     * as far as out goes, splitting the chords across the common ForkJoinPool.
+     * Nothing the length of P is allocated, so mixing phrases needs only the one buffer.
+     * @param grain - the most chords rendered by one task
+     * @return the largest sum written to out, or 0 if none is positive
+     */
+    public static double mix(Phrase P, float r, int grain, double[] out) {
+        return mix(P, r, grain, out, 0);
+    }
+
+    /**
+     * As mix(P, r, grain, out), but out holds only samples [from, from + out.length) of P,
+     * so a phrase can be mixed a segment at a time
+     */
+    public static double mix(Phrase P, float r, int grain, double[] out, long from) {
+        if (grain < 1) throw new IllegalArgumentException("Grain must be positive");
+        if (from < 0) throw new IllegalArgumentException("Sample offset must be non-negative");
+        Synthesizer S = new Synthesizer(r, P.spc);
+        if (S.Npc == 0) return 0;
+        int lo = (int)Math.min(P.length, from / S.Npc);
+        int hi = (int)Math.min(P.length, (from + out.length + S.Npc - 1) / S.Npc);
+        return ForkJoinPool.commonPool().invoke(S.new Mix(P, out, from, lo, hi, grain));
+    }
+
+    // renders chords [lo, hi) of P into their slices of out
+    private void render(Phrase P, double[] out, int lo, int hi) {
+        for (int i = lo; i < hi; i ++) {
+            // runs of the same chord (see Phrase(Scanner) and expand()) just copy the last one
+            if (i > lo && P.C(i).equals(P.C(i-1))) {
+                System.arraycopy(out, Npc * (i-1), out, Npc * i, Npc);
+            } else {
+                render(P.C(i), out, Npc * i);
+            }
+        }
+    }
+
+    // adds chords [lo, hi) of P into their slices of out, which starts at sample from,
+    //      returning the largest sum
+    private double mix(Phrase P, double[] out, long from, int lo, int hi) {
+        double[] buf = new double[Npc], sum = new double[Npc];
+        double max = 0;
+        for (int i = lo; i < hi; i ++) {
+            // the last chord rendered is still in buf
+            if (i == lo || ! P.C(i).equals(P.C(i-1))) render(P.C(i), buf, 0);
+
+            // the first and last chords may hang over the ends of out
+            int off = (int)((long)Npc * i - from);
+            int j0 = Math.max(0, -off), m = Math.min(Npc, out.length - off);
+            if (m <= j0) continue;
+
+            // added in a copy indexed like buf, since C2 won't vectorize arrays at different offsets
+            System.arraycopy(out, off + j0, sum, j0, m - j0);
+            for (int j = j0; j < m; j ++) sum[j] += buf[j];
+            for (int j = j0; j < m; j ++) max = Math.max(max, sum[j]);
+            System.arraycopy(sum, j0, out, off + j0, m - j0);
+        }
+        return max;
+    }
+
+    @SuppressWarnings("serial")    // tasks are never serialized
+    private class Mix extends RecursiveTask<Double> {
+        private final Phrase P;
+        private final double[] out;
+        private final long from;
+        private final int lo, hi, grain;
+
+        Mix(Phrase P, double[] out, long from, int lo, int hi, int grain) {
+            this.P = P;
+            this.out = out;
+            this.from = from;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        protected Double compute() {
+            if (hi - lo <= grain) return mix(P, out, from, lo, hi);
+            int mid = (lo + hi) >>> 1;
+            Mix left = new Mix(P, out, from, lo, mid, grain);
+            left.fork();
+            double right = new Mix(P, out, from, mid, hi, grain).compute();
+            return Math.max(left.join(), right);
+        }
+    }
+
+    @SuppressWarnings("serial")    // tasks are never serialized
+    private class Render extends RecursiveAction {
+        private final Phrase P;
+        private final double[] out;
+        private final int lo, hi, grain;
+
+        Render(Phrase P, double[] out, int lo, int hi, int grain) {
+            this.P = P;
+            this.out = out;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        protected void compute() {
+            if (hi - lo <= grain) {
+                render(P, out, lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Render(P, out, lo, mid, grain), new Render(P, out, mid, hi, grain));
+        }
+    }
+}
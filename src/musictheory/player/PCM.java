@@ -0,0 +1,123 @@
+package musictheory.player;
+
+import musictheory.music.Phrase;
+import musictheory.music.Synthesizer;
+
+import java.io.IOException;
+
+import java.util.Arrays;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * The conversions Player and Writer share, from phrases to raw bytes:
+ * one channel of 32-bit signed integers in Big Endian order, normalized to the peak.
+ *
+ * Phrases are mixed in place into a single buffer, and that buffer is quantized straight
+ * into bytes, so rendering takes 12 bytes per sample however many phrases are mixed.
+ * Mixing is vectorized by Synthesizer.mix. The peak and quantizing loops stay scalar, since
+ * C2 (as of JDK 17) vectorizes neither double max reductions nor double to int conversion,
+ * but quantized blocks are packed Big Endian by bulk IntBuffer puts, which swap bytes in bulk.
+ */
+class PCM {
+    private static final int BLOCK = 4096;  // samples converted at a time
+    private static final int SEGMENT = 1 << 20; // samples mixed at a time, when writing a file
+
+    private PCM() {}
+
+    /**
+     * Mixes phrases (played simultaneously) and converts them to raw bytes
+     * @param r - the sample rate, ie the number of samples per second of time
+     * @param grain - the most chords each task renders
+     * @param Ps - any positive number of phrases
+     */
+    static byte[] render(float r, int grain, Phrase... Ps) {
+        check(Ps);
+        double[] phases = new double[(int)samples(r, Ps[0])];
+        for (int i = 0; i < Ps.length - 1; i ++) Synthesizer.mix(Ps[i], r, grain, phases);
+
+        // the last phrase finds the peak as it finishes each sum
+        Phrase last = Ps[Ps.length - 1];
+        double max = Synthesizer.mix(last, r, grain, phases);
+        for (int i = (int)samples(r, last); i < phases.length; i ++) max = Math.max(max, phases[i]);
+
+        return quantize(phases, max);
+    }
+
+    /**
+     * Mixes phrases (played simultaneously) into out a segment at a time,
+     * so memory doesn't grow with their length
+     * @param r - the sample rate, ie the number of samples per second of time
+     * @param grain - the most chords each task renders
+     * @param Ps - any positive number of phrases
+     */
+    static void render(float r, int grain, WavWriter out, Phrase... Ps) throws IOException {
+        check(Ps);
+        long N = samples(r, Ps[0]);
+        double[] phases = new double[(int)Math.min(N, SEGMENT)];
+        for (long from = 0; from < N; from += phases.length) {
+            int n = (int)Math.min(phases.length, N - from);
+            Arrays.fill(phases, 0);
+            for (Phrase P: Ps) Synthesizer.mix(P, r, grain, phases, from);
+            out.write(phases, 0, n);
+        }
+    }
+
+    private static void check(Phrase... Ps) {
+        if (! Phrase.sameKey(Ps))
+            throw new IllegalArgumentException("Cannot mix phrases of different key");
+        if (! Phrase.sameTempo(Ps))
+            throw new IllegalArgumentException("Cannot mix phrases of different tempo");
+        if (! Phrase.sameDuration(Ps))
+            throw new IllegalArgumentException("Cannot mix phrases of different duration");
+    }
+
+    // the number of samples P renders to
+    private static long samples(float r, Phrase P) {
+        return (long)new Synthesizer(r, P.spc, null).Npc * P.length;
+    }
+
+    /**
+     * The largest amplitude, or 0 if none is positive.
+     * This is the signed maximum, not the largest magnitude: Player and Writer have always
+     * normalized to it, so levels match files and playback made before. Any trough deeper than
+     * the peak saturates at Integer.MIN_VALUE when quantized, rather than wrapping around.
+     */
+    static double peak(double[] phases) {
+        double max = 0;
+        for (int i = 0; i < phases.length; i ++) max = Math.max(max, phases[i]);
+        return max;
+    }
+
+    /**
+     * Converts amplitudes to raw bytes, mapping max to Integer.MAX_VALUE
+     */
+    static byte[] quantize(double[] phases, double max) {
+        byte[] raw = new byte[4*phases.length];
+        quantize(phases, 0, phases.length, max, ByteBuffer.wrap(raw).asIntBuffer());
+        return raw;
+    }
+
+    /**
+     * Converts amplitudes [from, to) to integers, mapping max to Integer.MAX_VALUE, and puts them in out
+     */
+    static void quantize(double[] phases, int from, int to, double max, IntBuffer out) {
+        // a block at a time, so the byte order is swapped in bulk
+        int[] block = new int[Math.min(BLOCK, to - from)];
+        for (int i = from; i < to; i += block.length) {
+            int n = Math.min(block.length, to - i);
+            for (int j = 0; j < n; j ++) block[j] = (int)(phases[i + j] / max * Integer.MAX_VALUE);
+            out.put(block, 0, n);
+        }
+    }
+
+    /**
+     * Converts integer amplitudes to raw bytes
+     */
+    static byte[] pack(int[] fn) {
+        byte[] raw = new byte[4*fn.length];
+        ByteBuffer.wrap(raw).asIntBuffer().put(fn);
+        return raw;
+    }
+}
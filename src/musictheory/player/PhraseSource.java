@@ -0,0 +1,203 @@
+package musictheory.player;
+
+import musictheory.music.Phrase;
+import musictheory.music.Synthesizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.Arrays;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Streams phrases (played simultaneously) as raw bytes, in the format Player and Writer use:
+ * one channel of 32-bit signed integers in Big Endian order.
+ *
+ * Samples are synthesized a chunk at a time, as they are read, so memory stays constant
+ * however long the phrases are, and the first bytes are ready at once. Since the whole
+ * waveform is never seen, it can't be normalized to its true peak: by default it is
+ * normalized to peakBound(Ps) instead, which can't be exceeded but usually isn't reached.
+ */
+public class PhraseSource extends InputStream implements ReadableByteChannel {
+    /** samples synthesized at a time */
+    public static final int CHUNK = 4096;
+
+    /** the format of the bytes this produces */
+    public final AudioFormat format;
+    /** the total number of samples (frames) */
+    public final long frames;
+    /** the amplitude mapped to Integer.MAX_VALUE */
+    public final double peak;
+
+    private final Phrase[] Ps;
+    private final Synthesizer[] S;
+    private final double[][] chord;     // the samples of the current chord of each phrase
+    private final int[] at;             // the index of that chord, or -1
+
+    private final double[] mix = new double[CHUNK];
+    private final ByteBuffer out = ByteBuffer.allocate(4*CHUNK);    // Big Endian
+    private long pos;                   // samples synthesized so far
+    private boolean open = true;
+
+    /**
+     * Normalizes to peakBound(Ps)
+     * @param r - the sample rate, ie the number of samples per second of time
+     * @param Ps - any positive number of phrases. They'll all be played simultaneously.
+     */
+    public PhraseSource(float r, Phrase... Ps) {
+        this(r, peakBound(r, Ps), Ps);
+    }
+
+    /**
+     * @param r - the sample rate, ie the number of samples per second of time
+     * @param peak - the amplitude to map to Integer.MAX_VALUE
+     * @param Ps - any positive number of phrases. They'll all be played simultaneously.
+     */
+    public PhraseSource(float r, double peak, Phrase... Ps) {
+        if (! Phrase.sameKey(Ps))
+            throw new IllegalArgumentException("Cannot mix phrases of different key");
+        if (! Phrase.sameTempo(Ps))
+            throw new IllegalArgumentException("Cannot mix phrases of different tempo");
+        if (! Phrase.sameDuration(Ps))
+            throw new IllegalArgumentException("Cannot mix phrases of different duration");
+
+        this.format = new AudioFormat(r, 32, 1, true, true);
+        this.peak = peak;
+        this.Ps = Ps.clone();
+        this.S = new Synthesizer[Ps.length];
+        this.chord = new double[Ps.length][];
+        this.at = new int[Ps.length];
+        for (int p = 0; p < Ps.length; p ++) {
+            S[p] = new Synthesizer(r, Ps[p].spc);
+            chord[p] = new double[S[p].Npc];
+            at[p] = -1;
+        }
+        this.frames = (long)S[0].Npc * Ps[0].length;
+
+        out.flip(); // nothing to read yet
+    }
+
+    /**
+     * An upper bound on the amplitude of the phrases played together at sample rate r:
+     * no note sounds louder than its relative dynamic, so no sample can exceed the
+     * sum of the magnitudes of the dynamics sounding at that moment.
+     */
+    public static double peakBound(float r, Phrase... Ps) {
+        int[] Npc = new int[Ps.length];
+        double[][] loud = new double[Ps.length][];  // of each chord
+        for (int p = 0; p < Ps.length; p ++) {
+            Npc[p] = new Synthesizer(r, Ps[p].spc, null).Npc;
+            loud[p] = new double[Ps[p].length];
+            for (int i = 0; i < Ps[p].length; i ++) {
+                for (int k = 0; k < Ps[p].C(i).length; k ++) loud[p][i] += Math.abs(Ps[p].C(i).A(k));
+            }
+        }
+
+        // walk the chord boundaries of every phrase at once
+        long N = (long)Npc[0] * Ps[0].length;
+        int[] at = new int[Ps.length];
+        double bound = 0;
+        for (long t = 0; t < N; ) {
+            double sum = 0;
+            long next = N;
+            for (int p = 0; p < Ps.length; p ++) {
+                if (Npc[p] == 0) continue;              // this phrase makes no samples
+                if (at[p] >= loud[p].length) continue;  // this phrase has ended
+                sum += loud[p][at[p]];
+                next = Math.min(next, (long)Npc[p] * (at[p] + 1));
+            }
+            bound = Math.max(bound, sum);
+
+            for (int p = 0; p < Ps.length; p ++) {
+                if (Npc[p] > 0 && (long)Npc[p] * (at[p] + 1) == next) at[p] ++;
+            }
+            if (next <= t) break;   // no phrase has chords left
+            t = next;
+        }
+        return bound;
+    }
+
+    /**
+     * This source as an AudioInputStream, for AudioSystem
+     */
+    public AudioInputStream asAudioInputStream() {
+        return new AudioInputStream(this, format, frames);
+    }
+
+    public int read() throws IOException {
+        if (! out.hasRemaining() && ! fill()) return -1;
+        return out.get() & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (! out.hasRemaining() && ! fill()) return -1;
+        int n = Math.min(len, out.remaining());
+        out.get(b, off, n);
+        return n;
+    }
+
+    public int read(ByteBuffer dst) throws IOException {
+        if (! open) throw new ClosedChannelException();
+        if (! out.hasRemaining() && ! fill()) return -1;
+        int n = Math.min(dst.remaining(), out.remaining());
+        int limit = out.limit();
+        out.limit(out.position() + n);
+        dst.put(out);
+        out.limit(limit);
+        return n;
+    }
+
+    public int available() {
+        return out.remaining();
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void close() {
+        open = false;
+    }
+
+    // synthesizes the next chunk into out, returning false at the end
+    private boolean fill() {
+        if (! open || pos >= frames) return false;
+        int n = (int)Math.min(CHUNK, frames - pos);
+
+        Arrays.fill(mix, 0, n, 0);
+        for (int p = 0; p < Ps.length; p ++) {
+            int Npc = S[p].Npc;
+            if (Npc == 0) continue;     // chords too short to hold a sample: the phrase is silent
+            // a chunk may span several chords, or none of this phrase's once it has ended
+            for (int j = 0; j < n; ) {
+                long s = pos + j;
+                int i = (int)(s / Npc);
+                if (i >= Ps[p].length) break;
+
+                if (at[p] < 0 || ! Ps[p].C(i).equals(Ps[p].C(at[p]))) {
+                    S[p].render(Ps[p].C(i), chord[p], 0);
+                }
+                at[p] = i;
+
+                int o = (int)(s - (long)i * Npc);
+                int m = Math.min(n - j, Npc - o);
+                for (int k = 0; k < m; k ++) mix[j + k] += chord[p][o + k];
+                j += m;
+            }
+        }
+
+        out.clear();
+        PCM.quantize(mix, 0, n, peak, out.asIntBuffer());
+        out.limit(4*n);
+
+        pos += n;
+        return true;
+    }
+}
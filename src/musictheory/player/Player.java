@@ -7,12 +7,13 @@ import musictheory.music.Phrase;
 import musictheory.music.Chord;
 import musictheory.music.Note;
 
-import java.util.ArrayList;
-
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
+import javax.sound.sampled.SourceDataLine;
+
+import java.io.IOException;
 
 /**
  * Player - static class, just a vector for its functions
@@ -20,6 +21,8 @@ import javax.sound.sampled.Clip;
 public class Player {
     /** the standardized sample rate */
     public static float R = 44100; // samples / sec
+    /** the most chords each task renders, when phrases are rendered in parallel */
+    public static int GRAIN = 16;
 
     /**
      * play - converts phrases into raw bytes and asks the operating system to sound them
@@ -27,28 +30,35 @@ public class Player {
      * @param Ps - any positive number of phrases. They'll all be played simultaneously.
      */
     public static void play(Phrase... Ps) {
-        if (! Phrase.sameKey(Ps))
-            throw new IllegalArgumentException("Cannot mix phrases of different key");
-        if (! Phrase.sameTempo(Ps))
-            throw new IllegalArgumentException("Cannot mix phrases of different tempo");
-        if (! Phrase.sameDuration(Ps))
-            throw new IllegalArgumentException("Cannot mix phrases of different duration");
+        play(PCM.render(R, GRAIN, Ps));
+    }
 
-        ArrayList<double[]> ps = new ArrayList<>(Ps.length);
-        for (int i = 0; i < Ps.length; i ++) {
-            ps.add(Ps[i].phases(R));
-        }
+    /**
+     * stream - as play(Ps), but synthesizes the phrases as the sound card consumes them,
+     *      so sound starts at once and memory doesn't grow with their length.
+     *      Normalizes to PhraseSource.peakBound rather than the true peak, so may sound quieter.
+     *
+     * @param Ps - any positive number of phrases. They'll all be played simultaneously.
+     */
+    public static void stream(Phrase... Ps) {
+        PhraseSource src = new PhraseSource(R, Ps);
+        try {
+            SourceDataLine line = AudioSystem.getSourceDataLine(src.format);
+            line.open(src.format);
+            line.start();
 
-        double[] phases = new double[ps.get(0).length];
-        // combine phases
-        for (int i = 0; i < phases.length; i ++) {
-            phases[i] = 0; // technically unnecessary in Java
-            for (int j = 0; j < Ps.length; j ++) {
-                phases[i] += ps.get(j)[i];
-            }
-        }
+            byte[] buf = new byte[4*PhraseSource.CHUNK];
+            for (int n; (n = src.read(buf, 0, buf.length)) > 0; ) line.write(buf, 0, n);
 
-        play(phases);
+            line.drain();
+            line.close();
+        } catch (LineUnavailableException e) {
+            System.err.println("System could not provide source data line.");
+        } catch (IOException e) {
+            System.err.println("Could not synthesize phrases: "+e.getMessage());
+        } finally {
+            src.close();
+        }
     }
 
     /**
@@ -58,18 +68,7 @@ public class Player {
      * In retrospect, "phases" is probably not the right word...
      */
     public static void play(double[] phases) {
-        double max = 0;
-        // find peak phase, to normalize to max int
-        for (int i = 0; i < phases.length; i ++) {
-            if (phases[i] > max) max = phases[i];
-        }
-
-        int[] fn = new int[phases.length];
-        for (int i = 0; i < phases.length; i ++) {
-            fn[i] = (int)(phases[i] / max * Integer.MAX_VALUE);
-        }
-
-        play(fn);
+        play(PCM.quantize(phases, PCM.peak(phases)));
     }
 
     /**
@@ -77,15 +76,7 @@ public class Player {
      * @param fn - usually, a pressure amplitude function normalized to Integer.MAX_VALUE
      */
     public static void play(int[] fn) {
-        byte[] raw = new byte[4*fn.length];
-        for (int i = 0; i < fn.length; i ++) {
-            raw[4*i] = (byte)(fn[i] >> 24);
-            raw[4*i+1] = (byte)(fn[i] >> 16);
-            raw[4*i+2] = (byte)(fn[i] >> 8);
-            raw[4*i+3] = (byte)(fn[i]);
-        }
-
-        play(raw);
+        play(PCM.pack(fn));
     }
 
     /**
@@ -0,0 +1,192 @@
+package musictheory.player;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes one channel of 32-bit integer samples to a WAV file a block at a time,
+ * through a FileChannel, so the whole file is never held in memory.
+ * The RIFF header is written first and its sizes patched in at close().
+ *
+ * Given no peak, samples are normalized to their true peak (as Writer.write always has)
+ * in two passes: they are written as 64-bit floats while the peak is found, then at close()
+ * rewritten in place as integers, through memory-mapped windows of the file.
+ */
+public class WavWriter implements Closeable {
+    private static final int HEADER = 44;       // bytes
+    private static final int BLOCK = 4096;      // samples per write, or per window when rewriting
+    private static final short INTEGER = 1, FLOAT = 3;  // WAV format tags
+
+    /** the sample rate, ie the number of samples per second of time */
+    public final float r;
+
+    private final FileChannel channel;
+    private final boolean normalizing;
+    private double peak;                // the amplitude mapped to Integer.MAX_VALUE
+    private long samples;               // written so far
+    private final ByteBuffer buf;       // direct, so the channel writes it without another copy
+    private boolean open = true;
+
+    /**
+     * Normalizes samples to their true peak at close()
+     * @param out - a file with write permissions, to be created or overwritten
+     * @param r - the sample rate, ie the number of samples per second of time
+     */
+    public WavWriter(File out, float r) throws IOException {
+        this(out, r, 0, true);
+    }
+
+    /**
+     * Normalizes samples to a known peak as they are written
+     * @param out - a file with write permissions, to be created or overwritten
+     * @param r - the sample rate, ie the number of samples per second of time
+     * @param peak - the amplitude to map to Integer.MAX_VALUE
+     */
+    public WavWriter(File out, float r, double peak) throws IOException {
+        this(out, r, peak, false);
+    }
+
+    private WavWriter(File out, float r, double peak, boolean normalizing) throws IOException {
+        this.r = r;
+        this.peak = peak;
+        this.normalizing = normalizing;
+        this.buf = ByteBuffer.allocateDirect((normalizing ? 8 : 4) * BLOCK).order(ByteOrder.LITTLE_ENDIAN);
+        this.channel = FileChannel.open(out.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+        // a valid (empty) file from the start, in the format of the first pass
+        header(normalizing ? FLOAT : INTEGER, normalizing ? 64 : 32);
+        channel.position(HEADER);
+    }
+
+    /**
+     * Writes amplitudes [from, to) of phases
+     */
+    public void write(double[] phases, int from, int to) throws IOException {
+        check();
+        for (int i = from; i < to; i += BLOCK) {
+            int n = Math.min(BLOCK, to - i);
+            buf.clear();
+            if (normalizing) {
+                for (int j = i; j < i + n; j ++) peak = Math.max(peak, phases[j]);
+                buf.asDoubleBuffer().put(phases, i, n);
+                buf.limit(8*n);
+            } else {
+                PCM.quantize(phases, i, i + n, peak, buf.asIntBuffer());
+                buf.limit(4*n);
+            }
+            drain();
+            samples += n;
+        }
+    }
+
+    /**
+     * Writes samples [from, to) of fn, already normalized to Integer.MAX_VALUE.
+     * Only for a writer given its peak, since these can't be normalized again.
+     */
+    public void write(int[] fn, int from, int to) throws IOException {
+        check();
+        if (normalizing) throw new IllegalStateException("Cannot normalize integer samples");
+        for (int i = from; i < to; i += BLOCK) {
+            int n = Math.min(BLOCK, to - i);
+            buf.clear();
+            buf.asIntBuffer().put(fn, i, n);
+            buf.limit(4*n);
+            drain();
+            samples += n;
+        }
+    }
+
+    /**
+     * Writes samples [from, to) of raw, 4 bytes each in Big Endian order, already normalized to Integer.MAX_VALUE.
+     * Only for a writer given its peak, since these can't be normalized again.
+     */
+    public void write(byte[] raw, int from, int to) throws IOException {
+        check();
+        if (normalizing) throw new IllegalStateException("Cannot normalize integer samples");
+        for (int i = from; i < to; i += BLOCK) {
+            int n = Math.min(BLOCK, to - i);
+            buf.clear();
+            // a bulk put between buffers of opposite order swaps the bytes of each sample
+            buf.asIntBuffer().put(ByteBuffer.wrap(raw, 4*i, 4*n).asIntBuffer());
+            buf.limit(4*n);
+            drain();
+            samples += n;
+        }
+    }
+
+    /**
+     * The number of samples written so far
+     */
+    public long length() {
+        return samples;
+    }
+
+    /**
+     * Finishes the file: normalizes it, if no peak was given, and fills in the header
+     */
+    public void close() throws IOException {
+        if (! open) return;
+        open = false;
+        try {
+            if (normalizing) normalize();
+            header(INTEGER, 32);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // rewrites the 64-bit floats as 32-bit integers, compacting the file in place.
+    //      Each window is read whole before its integers are written, and the integers
+    //      only ever land on floats already read, so one pass suffices.
+    private void normalize() throws IOException {
+        double[] block = new double[BLOCK];
+        for (long i = 0; i < samples; i += BLOCK) {
+            int n = (int)Math.min(BLOCK, samples - i);
+            DoubleBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + 8*i, 8L*n)
+                .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            in.get(block, 0, n);
+
+            IntBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, HEADER + 4*i, 4L*n)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            PCM.quantize(block, 0, n, peak, out);
+        }
+        channel.truncate(HEADER + 4*samples);
+    }
+
+    // writes the RIFF header for the samples so far, in the given format
+    private void header(short format, int bits) throws IOException {
+        long data = samples * bits / 8;
+        if (data > 0xffffffffL - (HEADER - 8))
+            throw new IOException("WAV files cannot hold more than 4 GiB");
+
+        int rate = (int)r;
+        ByteBuffer h = ByteBuffer.allocateDirect(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        h.put("RIFF".getBytes()).putInt((int)(data + HEADER - 8)).put("WAVE".getBytes());
+        h.put("fmt ".getBytes()).putInt(16)
+            .putShort(format).putShort((short)1)            // mono
+            .putInt(rate).putInt(rate * bits/8)             // byte rate
+            .putShort((short)(bits/8)).putShort((short)bits);   // block align, bits per sample
+        h.put("data".getBytes()).putInt((int)data);
+        h.flip();
+        while (h.hasRemaining()) channel.write(h, h.position());
+    }
+
+    // writes all of buf at the channel's position
+    private void drain() throws IOException {
+        while (buf.hasRemaining()) channel.write(buf);
+    }
+
+    private void check() throws IOException {
+        if (! open) throw new IOException("WavWriter is closed");
+    }
+}
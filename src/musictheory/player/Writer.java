@@ -9,15 +9,10 @@ import musictheory.music.Phrase;
 import musictheory.music.Chord;
 import musictheory.music.Note;
 
-import java.util.ArrayList;
-
 import java.io.File;
 import java.io.IOException;
-import java.io.ByteArrayInputStream;
 
-import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioFileFormat;
 
 public class Writer {
@@ -26,35 +21,35 @@ public class Writer {
      * This should REALLY not be its own variable...
      */
     public static float R = 44100; // samples / sec
+    /**
+     * the most chords each task renders, when phrases are rendered in parallel
+     */
+    public static int GRAIN = 16;
 
     /**
      * write a bunch of phrases (played simultaneously) to the specified file, in WAV format
+     *      The phrases are mixed a segment at a time, and normalized in the file itself (see WavWriter),
+     *      so memory doesn't grow with their length.
      * @param out - a validly opened file with write permissions
      * @param Ps - any positive number of phrases, to be "played" simultaneously
      */
     public static void write(File out, Phrase... Ps) throws IOException {
-        if (! Phrase.sameKey(Ps))
-            throw new IllegalArgumentException("Cannot mix phrases of different key");
-        if (! Phrase.sameTempo(Ps))
-            throw new IllegalArgumentException("Cannot mix phrases of different tempo");
-        if (! Phrase.sameDuration(Ps))
-            throw new IllegalArgumentException("Cannot mix phrases of different duration");
-
-        ArrayList<double[]> ps = new ArrayList<>(Ps.length);
-        for (int i = 0; i < Ps.length; i ++) {
-            ps.add(Ps[i].phases(R));
+        try (WavWriter wav = new WavWriter(out, R)) {
+            PCM.render(R, GRAIN, wav, Ps);
         }
+    }
 
-        double[] phases = new double[ps.get(0).length];
-        // combine phases
-        for (int i = 0; i < phases.length; i ++) {
-            phases[i] = 0; // technically unnecessary in Java
-            for (int j = 0; j < Ps.length; j ++) {
-                phases[i] += ps.get(j)[i];
-            }
+    /**
+     * as write(out, Ps), but synthesizes the phrases as the file is written,
+     *      so memory doesn't grow with their length.
+     *      Normalizes to PhraseSource.peakBound rather than the true peak, so may sound quieter.
+     * @param out - a validly opened file with write permissions
+     * @param Ps - any positive number of phrases, to be "played" simultaneously
+     */
+    public static void stream(File out, Phrase... Ps) throws IOException {
+        try (PhraseSource src = new PhraseSource(R, Ps)) {
+            AudioSystem.write(src.asAudioInputStream(), AudioFileFormat.Type.WAVE, out);
         }
-
-        write(out, phases);
     }
 
     /**
@@ -63,18 +58,9 @@ public class Writer {
      * @param phases - misnomer: the sequence of amplitudes for the sound card to reproduce
      */
     public static void write(File out, double[] phases) throws IOException {
-        double max = 0;
-        // find peak phase, to normalize to max int
-        for (int i = 0; i < phases.length; i ++) {
-            if (phases[i] > max) max = phases[i];
-        }
-
-        int[] fn = new int[phases.length];
-        for (int i = 0; i < phases.length; i ++) {
-            fn[i] = (int)(phases[i] / max * Integer.MAX_VALUE);
+        try (WavWriter wav = new WavWriter(out, R, PCM.peak(phases))) {
+            wav.write(phases, 0, phases.length);
         }
-
-        write(out, fn);
     }
 
     /**
@@ -83,15 +69,9 @@ public class Writer {
      * @param fn - usually, a normalized sequence of amplitudes for the sound card to reproduce
      */
     public static void write(File out, int[] fn) throws IOException {
-        byte[] raw = new byte[4*fn.length];
-        for (int i = 0; i < fn.length; i ++) {
-            raw[4*i] = (byte)(fn[i] >> 24);
-            raw[4*i+1] = (byte)(fn[i] >> 16);
-            raw[4*i+2] = (byte)(fn[i] >> 8);
-            raw[4*i+3] = (byte)(fn[i]);
+        try (WavWriter wav = new WavWriter(out, R, Integer.MAX_VALUE)) {
+            wav.write(fn, 0, fn.length);
         }
-
-        write(out, raw);
     }
 
     /**
@@ -100,9 +80,8 @@ public class Writer {
      * @param raw - 4 bytes/number, Big Endian order
      */
     public static void write(File out, byte[] raw) throws IOException {
-        AudioFormat format = new AudioFormat(R, 32, 1, true, true);
-        AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(raw), format, raw.length/4);
-
-        AudioSystem.write(in, AudioFileFormat.Type.WAVE, out);
+        try (WavWriter wav = new WavWriter(out, R, Integer.MAX_VALUE)) {
+            wav.write(raw, 0, raw.length/4);
+        }
     }
 }